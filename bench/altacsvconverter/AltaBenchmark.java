@@ -0,0 +1,244 @@
+package altacsvconverter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+//times each conversion stage on its own, usage:
+//  AltaBenchmark [capture.csv] [-rows n] [-warmup n] [-iterations n] [-stage name]
+//without a capture one of -rows messages is generated into a temporary file
+//
+//every stage except tokenize and convert works on messages already held in memory, so
+//a regression shows up in the stage that caused it. each stage runs -warmup untimed
+//iterations before the timed ones to let the JIT settle
+public class AltaBenchmark {
+
+    private static final int DEFAULT_ROWS = 500000;
+
+    //one timed stage, run returns a value derived from its work so it can't be skipped
+    private abstract static class Stage {
+        final String name;
+
+        Stage(String name){
+            this.name = name;
+        }
+
+        abstract long run() throws IOException;
+    }
+    //output stream counting and dropping what is written to it
+    private static class DiscardStream extends OutputStream {
+        long bytes = 0;
+
+        @Override public void write(int b){
+            bytes++;
+        }
+
+        @Override public void write(byte[] source, int offset, int count){
+            bytes += count;
+        }
+    }
+
+    static volatile long consumed;          //results of the stages, keeps their work alive
+
+    private final Path capture;
+    private final AltaMessage[] messages;   //whole capture, decoded once up front
+
+    private AltaBenchmark(Path capture, AltaMessage[] messages){
+        this.capture = capture;
+        this.messages = messages;
+    }
+
+    public static void main(String[] args) throws IOException{
+
+        String captureName = null;
+        long rows = DEFAULT_ROWS;
+        int warmup = 3;
+        int iterations = 5;
+        String only = null;
+        for (int arg=0;arg < args.length;arg++){
+            if (args[arg].equals("-rows") && arg+1 < args.length) rows = Long.parseLong(args[++arg]);
+            else if (args[arg].equals("-warmup") && arg+1 < args.length) warmup = Integer.parseInt(args[++arg]);
+            else if (args[arg].equals("-iterations") && arg+1 < args.length){
+                iterations = Math.max(1, Integer.parseInt(args[++arg]));
+            }
+            else if (args[arg].equals("-stage") && arg+1 < args.length) only = args[++arg];
+            else captureName = args[arg];
+        }
+
+        Path capture;
+        boolean generated = captureName == null;
+        if (generated){
+            capture = Files.createTempFile("alta-bench", ".csv");
+            System.out.println("Generating " + rows + " messages into " + capture + "...");
+            AltaCaptureGenerator.generate(capture, rows, 1553);
+        }
+        else capture = Paths.get(captureName);
+
+        try{
+            AltaBenchmark benchmark = new AltaBenchmark(capture, load(capture));
+            System.out.println(benchmark.messages.length + " messages, " + Files.size(capture) / 1024 + " KB, "
+                    + warmup + " warmup and " + iterations + " timed iterations per stage");
+            System.out.println(String.format(Locale.ROOT, "%-14s %10s %10s %12s", "stage", "mean ms", "min ms", "messages/s"));
+            for (Stage stage : benchmark.stages()){
+                if (only == null || only.equals(stage.name)) benchmark.measure(stage, warmup, iterations);
+            }
+        } finally {
+            if (generated) Files.deleteIfExists(capture);
+        }
+    }
+
+    private static AltaMessage[] load(Path capture) throws IOException{
+        List<AltaMessage> loaded = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(capture, StandardOpenOption.READ)){
+            AltaCSVTokenizer tokenizer = new AltaCSVTokenizer(channel, AltaCSVTokenizer.DEFAULT_BUFFER_SIZE);
+            tokenizer.skipLine();
+            AltaMessage message = new AltaMessage();
+            while (tokenizer.next(message)){
+                loaded.add(message);
+                message = new AltaMessage();
+            }
+        }
+        return loaded.toArray(new AltaMessage[loaded.size()]);
+    }
+
+    private void measure(Stage stage, int warmup, int iterations) throws IOException{
+
+        long check = 0;
+        for (int iteration=0;iteration < warmup;iteration++) check += stage.run();
+
+        long total = 0;
+        long min = Long.MAX_VALUE;
+        for (int iteration=0;iteration < iterations;iteration++){
+            long start = System.nanoTime();
+            check += stage.run();
+            long elapsed = System.nanoTime() - start;
+            total += elapsed;
+            min = Math.min(min, elapsed);
+        }
+
+        double mean = total / (double)iterations;
+        System.out.println(String.format(Locale.ROOT, "%-14s %10.1f %10.1f %12.0f", stage.name,
+                mean / 1e6, min / 1e6, messages.length / (mean / 1e9)));
+        consumed = check;
+    }
+
+    private List<Stage> stages(){
+        return Arrays.asList(
+            //csv bytes into messages
+            new Stage("tokenize"){
+                @Override long run() throws IOException{
+                    long rows = 0;
+                    try (FileChannel channel = FileChannel.open(capture, StandardOpenOption.READ)){
+                        AltaCSVTokenizer tokenizer = new AltaCSVTokenizer(channel, AltaCSVTokenizer.DEFAULT_BUFFER_SIZE);
+                        tokenizer.skipLine();
+                        AltaMessage message = new AltaMessage();
+                        while (tokenizer.next(message)) rows++;
+                    }
+                    return rows;
+                }
+            },
+            //ISO 8601 timestamps
+            new Stage("timestamps"){
+                @Override long run() throws IOException{
+                    AltaTimestamp timestamps = new AltaTimestamp();
+                    DiscardStream out = new DiscardStream();
+                    AltaOutputBuffer buffer = new AltaOutputBuffer(out, AltaOutputBuffer.DEFAULT_CAPACITY);
+                    for (AltaMessage message : messages) timestamps.write(message, buffer);
+                    buffer.flush();
+                    return out.bytes;
+                }
+            },
+            //RT addresses, sub addresses, direction, validity and mode codes
+            new Stage("commandStatus"){
+                @Override long run(){
+                    long sum = 0;
+                    for (AltaMessage message : messages){
+                        for (int index=0;index < 2;index++){
+                            sum += message.getRTAddress(index) + message.getRTSubAddress(index);
+                            if (message.isTransmit(index)) sum++;
+                            if (message.failedRTTest(index)) sum++;
+                        }
+                        sum += message.getModeCode();
+                    }
+                    return sum;
+                }
+            },
+            //message type, bus and error names from the CDP word
+            new Stage("cdp"){
+                @Override long run(){
+                    long sum = 0;
+                    for (AltaMessage message : messages){
+                        sum += message.getMessageType().length() + message.getMessageErrors().length();
+                        if (message.isBusA()) sum++;
+                    }
+                    return sum;
+                }
+            },
+            //data words as hex strings
+            new Stage("dataWords"){
+                @Override long run(){
+                    long sum = 0;
+                    for (AltaMessage message : messages) sum += message.getDataWordsHex().length();
+                    return sum;
+                }
+            },
+            new Stage("json"){
+                @Override long run() throws IOException{
+                    return format(new AltaMessageFormatter(AltaMessage.HEADERS, false));
+                }
+            },
+            new Stage("csv"){
+                @Override long run() throws IOException{
+                    return format(new AltaMessageFormatter(AltaMessage.HEADERS, true));
+                }
+            },
+            new Stage("columnar"){
+                @Override long run() throws IOException{
+                    DiscardStream out = new DiscardStream();
+                    try (AltaColumnarWriter writer = new AltaColumnarWriter(out, AltaMessage.HEADERS)){
+                        for (AltaMessage message : messages) writer.write(message);
+                    }
+                    return out.bytes;
+                }
+            },
+            //the whole file to json on disk, as the command line does it
+            new Stage("convert"){
+                @Override long run() throws IOException{
+                    Path folder = Files.createTempDirectory("alta-bench");
+                    PrintStream console = System.out;
+                    System.setOut(new PrintStream(new DiscardStream()));
+                    try{
+                        AltaStreamConverter converter = new AltaStreamConverter(
+                                Arrays.asList(AltaOutputFormat.JSON), AltaStreamConverter.DEFAULT_CHUNK_SIZE);
+                        AltaConversionResult result = converter.convert(capture.toString(), folder.toString());
+                        for (Path output : result.getOutputPaths()) Files.deleteIfExists(output);
+                        return result.getMessages();
+                    } finally {
+                        System.setOut(console);
+                        new File(folder.toFile(), "alta1553").delete();
+                        Files.deleteIfExists(folder);
+                    }
+                }
+            }
+        );
+    }
+
+    private long format(AltaMessageFormatter formatter) throws IOException{
+        DiscardStream out = new DiscardStream();
+        AltaOutputBuffer buffer = new AltaOutputBuffer(out, AltaOutputBuffer.DEFAULT_CAPACITY);
+        formatter.writeHeader(buffer);
+        for (AltaMessage message : messages) formatter.write(message, buffer);
+        buffer.flush();
+        return out.bytes;
+    }
+}
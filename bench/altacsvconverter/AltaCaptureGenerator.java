@@ -0,0 +1,178 @@
+package altacsvconverter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.Random;
+
+//writes synthetic alta captures for benchmarking, usage: <capture.csv> <rows> [seed]
+//
+//messages are a mix of BC-RT, RT-BC, RT-RT, mode code and broadcast transfers with
+//consistent command, status and CDP words, a few percent carry error bits
+public class AltaCaptureGenerator {
+
+    static final String HEADER = "TimeStamp, TimeHigh, TimeLow(20nsLSB), IMGap(100nsLSB), CMD1, CMD2, "
+            + "STS1, STS2, DATA01, DATA02, DATA03, DATA04, DATA05, DATA06, DATA07, DATA08, DATA09, "
+            + "DATA10, DATA11, DATA12, DATA13, DATA14, DATA15, DATA16, DATA17, DATA18, DATA19, "
+            + "DATA20, DATA21, DATA22, DATA23, DATA24, DATA25, DATA26, DATA27, DATA28, DATA29, "
+            + "DATA30, DATA31, DATA32, CDPStatusWord";
+
+    private static final int UNUSED_WORD = 65535;
+    private static final int BROADCAST_RT = 31;
+    private static final long WORD_NANOS = 20000;   //one 1553 word on the bus
+
+    //mode codes without and with a data word (Ref MIL-STD-1553, p.10)
+    private static final int[] MODE_CODES = {0, 1, 2, 3, 4, 5, 6, 7, 8};
+    private static final int[] MODE_CODES_WITH_DATA = {16, 17, 18, 19, 20, 21};
+
+    private static final int[] ERROR_BITS = {
+        AltaMessage.CDP_SYNC, AltaMessage.CDP_BIT_ERROR, AltaMessage.CDP_PARITY,
+        AltaMessage.CDP_WORD_COUNT, AltaMessage.CDP_NO_RESPONSE, AltaMessage.CDP_WRONG_RT,
+        AltaMessage.CDP_TWO_BUS
+    };
+
+    private final Random random;
+    private LocalDate date = LocalDate.of(2019, 3, 21);
+    private long nanoOfDay = 12 * AltaTimestamp.NANOS_PER_HOUR;
+    private long ticks = 30324286160000L;   //TimeHigh/TimeLow counter in 20ns units
+    private final StringBuilder row = new StringBuilder(512);
+
+    public AltaCaptureGenerator(long seed){
+        random = new Random(seed);
+    }
+
+    public static void main(String[] args) throws IOException{
+        if (args.length < 2){
+            System.out.println("Usage: AltaCaptureGenerator <capture.csv> <rows> [seed]");
+            return;
+        }
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 1553;
+        generate(Paths.get(args[0]), Long.parseLong(args[1]), seed);
+    }
+
+    public static void generate(Path capture, long rows, long seed) throws IOException{
+        AltaCaptureGenerator generator = new AltaCaptureGenerator(seed);
+        try (Writer out = new BufferedWriter(Files.newBufferedWriter(capture, StandardCharsets.US_ASCII), 1 << 20)){
+            out.write(HEADER);
+            out.write("\r\n");
+            for (long message=0;message < rows;message++) out.append(generator.nextRow()).append("\r\n");
+        }
+    }
+    //one alta row, the clock moves on by the gap and the length of the transfer
+    CharSequence nextRow(){
+
+        int[] command = {UNUSED_WORD, UNUSED_WORD};
+        int[] status = {UNUSED_WORD, UNUSED_WORD};
+        int cdp;
+        int words;
+
+        int rt = 1 + random.nextInt(30);
+        int subAddress = 1 + random.nextInt(30);
+        int wordCountField = random.nextInt(32);
+        int kind = random.nextInt(100);
+
+        if (kind < 40){
+            //BC-RT, receive
+            words = wordCountField == 0 ? 32 : wordCountField;
+            command[0] = commandWord(rt, false, subAddress, wordCountField);
+            status[0] = rt << 11;
+            cdp = AltaMessage.CDP_BC_RT;
+        }
+        else if (kind < 75){
+            //RT-BC, transmit
+            words = wordCountField == 0 ? 32 : wordCountField;
+            command[0] = commandWord(rt, true, subAddress, wordCountField);
+            status[0] = rt << 11;
+            cdp = AltaMessage.CDP_RT_BC;
+        }
+        else if (kind < 85){
+            //RT-RT, CMD1 receive and CMD2 transmit
+            int source = 1 + (rt + random.nextInt(29)) % 30;
+            words = wordCountField == 0 ? 32 : wordCountField;
+            command[0] = commandWord(rt, false, subAddress, wordCountField);
+            command[1] = commandWord(source, true, 1 + random.nextInt(30), wordCountField);
+            status[0] = rt << 11;
+            status[1] = source << 11;
+            cdp = AltaMessage.CDP_RT_RT;
+        }
+        else if (kind < 93){
+            //mode code, sub address 0 or 31
+            boolean withData = random.nextInt(4) == 0;
+            int modeCode = withData ? MODE_CODES_WITH_DATA[random.nextInt(MODE_CODES_WITH_DATA.length)]
+                    : MODE_CODES[random.nextInt(MODE_CODES.length)];
+            boolean transmit = !withData || modeCode == 16 || modeCode == 18 || modeCode == 19;
+            words = withData ? 1 : 0;
+            command[0] = commandWord(rt, transmit, random.nextBoolean() ? 0 : 31, modeCode);
+            status[0] = rt << 11;
+            cdp = AltaMessage.CDP_MODE_CODE;
+        }
+        else {
+            //broadcast BC-RT, no status response
+            words = wordCountField == 0 ? 32 : wordCountField;
+            command[0] = commandWord(BROADCAST_RT, false, subAddress, wordCountField);
+            cdp = AltaMessage.CDP_BROADCAST | AltaMessage.CDP_BC_RT;
+        }
+
+        if (random.nextInt(100) < 3){
+            cdp |= ERROR_BITS[random.nextInt(ERROR_BITS.length)];
+            if (status[0] != UNUSED_WORD) status[0] |= 1 << 10;
+        }
+        else cdp |= AltaMessage.CDP_NO_ERROR;
+        if (random.nextBoolean()) cdp |= AltaMessage.CDP_BUS_A;
+        cdp |= words & AltaMessage.CDP_WORD_COUNT_MASK;
+
+        //gaps of a few to a few hundred microseconds, with an occasional minor frame boundary
+        long gap = random.nextInt(20) == 0 ? 10000 + random.nextInt(200000) : 20 + random.nextInt(3000);
+        advance(gap * 100);
+
+        row.setLength(0);
+        appendTime();
+        row.append(',').append(ticks >>> 32).append(',').append(ticks & 0xFFFFFFFFL);
+        row.append(',').append(gap);
+        row.append(',').append(command[0]).append(',').append(command[1]);
+        row.append(',').append(status[0]).append(',').append(status[1]);
+        //words past the count are left over from earlier messages in real captures
+        for (int word=0;word < AltaMessage.MAX_DATA_WORDS;word++) row.append(',').append(random.nextInt(65536));
+        row.append(',').append(cdp & 0xFFFFFFFFL);
+
+        advance((words + 2) * WORD_NANOS);
+        return row;
+    }
+
+    private static int commandWord(int rt, boolean transmit, int subAddress, int wordCount){
+        return rt << 11 | (transmit ? 1 << 10 : 0) | subAddress << 5 | wordCount;
+    }
+
+    private void advance(long nanos){
+        nanoOfDay += nanos;
+        ticks += nanos / 20;
+        while (nanoOfDay >= AltaTimestamp.NANOS_PER_DAY){
+            nanoOfDay -= AltaTimestamp.NANOS_PER_DAY;
+            date = date.plusDays(1);
+        }
+    }
+    //[YYYY](Calendar Day)HH:MM:SS.mmm.uuu.nnn
+    private void appendTime(){
+        row.append('[').append(date.getYear()).append("](").append(date.getDayOfYear()).append(')');
+        long seconds = nanoOfDay / AltaTimestamp.NANOS_PER_SECOND;
+        long nanos = nanoOfDay % AltaTimestamp.NANOS_PER_SECOND;
+        appendDigits(seconds / 3600, 2).append(':');
+        appendDigits(seconds / 60 % 60, 2).append(':');
+        appendDigits(seconds % 60, 2).append('.');
+        appendDigits(nanos / 1000000, 3).append('.');
+        appendDigits(nanos / 1000 % 1000, 3).append('.');
+        appendDigits(nanos % 1000, 3);
+    }
+
+    private StringBuilder appendDigits(long value, int digits){
+        for (long limit=10;digits > 1;digits--,limit*=10){
+            if (value < limit) row.append('0');
+        }
+        return row.append(value);
+    }
+}
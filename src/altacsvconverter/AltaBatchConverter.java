@@ -0,0 +1,170 @@
+package altacsvconverter;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+//converts a folder of alta csv files on a bounded pool of worker threads
+public class AltaBatchConverter {
+
+    //rough heap cost of one buffered message plus the tokenizer and output buffers
+    private static final long BYTES_PER_ROW = 512;
+    private static final long BUFFER_BYTES = AltaCSVTokenizer.DEFAULT_BUFFER_SIZE
+            + AltaOutputBuffer.DEFAULT_CAPACITY;
+    //heap cost of a queued range relative to its size in the file (messages plus encoded output)
+    private static final long RANGE_EXPANSION = 8;
+    private static final int KB = 1024;
+
+    private final List<AltaSinkFactory> sinks;  //outputs written for every capture
+    private final int chunkSize;        //number of rows decoded per chunk
+    private final int threads;          //number of files converted at once
+    private final int decoders;         //threads decoding ranges of a single file
+    private final long rangeBytes;      //size of the ranges a single file is split into
+
+    private boolean skipMalformed = false;  //count and skip rows that can't be parsed
+    private AltaMessageFilter filter;   //rows to keep, null for all of them
+    private AltaMetrics metrics;        //collects every result, null if not wanted
+
+    private final Semaphore memory;     //heap budget in KB shared by running conversions
+    private final int memoryBudget;     //size of the budget in KB
+
+    public AltaBatchConverter(List<? extends AltaSinkFactory> sinks, int chunkSize, int threads){
+        this(sinks, chunkSize, threads, 1, AltaRangeConverter.DEFAULT_RANGE_BYTES);
+    }
+    //decoders > 1 splits every uncompressed file into ranges of rangeBytes decoded concurrently
+    public AltaBatchConverter(List<? extends AltaSinkFactory> sinks, int chunkSize, int threads,
+            int decoders, long rangeBytes){
+        this.sinks = new ArrayList<AltaSinkFactory>(sinks);
+        this.chunkSize = chunkSize;
+        this.threads = Math.max(1, threads);
+        this.decoders = Math.max(1, decoders);
+        this.rangeBytes = rangeBytes;
+
+        //leave half the heap for the writers and the rest of the JVM
+        memoryBudget = (int)Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / 2 / KB);
+        memory = new Semaphore(memoryBudget, true);
+    }
+    public void setSkipMalformed(boolean skipMalformed){
+        this.skipMalformed = skipMalformed;
+    }
+
+    public void setFilter(AltaMessageFilter filter){
+        this.filter = filter;
+    }
+
+    public void setMetrics(AltaMetrics metrics){
+        this.metrics = metrics;
+    }
+    //converts files into folderName/alta1553, returns one result per file in name order
+    public List<AltaConversionResult> convert(File[] files, final String folderName){
+
+        File[] sorted = files.clone();
+        Arrays.sort(sorted);
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        final ExecutorService decoderPool = decoders > 1 ? Executors.newFixedThreadPool(decoders) : null;
+        List<Future<AltaConversionResult>> futures = new ArrayList<>();
+        List<AltaConversionResult> results = new ArrayList<>();
+
+        try{
+            for (final File file : sorted){
+                futures.add(pool.submit(new Callable<AltaConversionResult>(){
+                    @Override public AltaConversionResult call() throws Exception{
+                        return convertFile(file, folderName, decoderPool);
+                    }
+                }));
+            }
+
+            //outputs are committed in input order so a shared output name always ends
+            //up holding the same file no matter which worker finished first
+            for (int index=0;index < sorted.length;index++){
+                AltaConversionResult result;
+                try{
+                    result = futures.get(index).get();
+                    result.commit();
+                } catch (ExecutionException failure){
+                    result = failedResult(sorted[index], folderName, failure.getCause());
+                } catch (Exception failure){
+                    result = failedResult(sorted[index], folderName, failure);
+                }
+                if (metrics != null) metrics.record(result);
+                results.add(result);
+            }
+        } finally {
+            pool.shutdownNow();
+            if (decoderPool != null) decoderPool.shutdownNow();
+        }
+        return results;
+    }
+
+    private AltaConversionResult convertFile(File file, String folderName,
+            ExecutorService decoderPool) throws Exception{
+
+        //admit the file only once its share of the heap budget is free
+        //gzipped captures can't be split into ranges
+        boolean ranges = decoderPool != null && !AltaStreamConverter.isCompressed(file.getName());
+        int permits = estimatePermits(file, ranges);
+        memory.acquire(permits);
+        try{
+            String altaFileName = folderName + "/" + file.getName();
+            if (ranges){
+                AltaRangeConverter converter = new AltaRangeConverter(sinks,
+                        decoderPool, decoders * 2, rangeBytes);
+                converter.setSkipMalformed(skipMalformed);
+                converter.setFilter(filter);
+                return converter.convertToPart(altaFileName, folderName);
+            }
+            AltaStreamConverter converter = new AltaStreamConverter(sinks, chunkSize);
+            converter.setSkipMalformed(skipMalformed);
+            converter.setFilter(filter);
+            return converter.convertToPart(altaFileName, folderName);
+        } finally {
+            memory.release(permits);
+        }
+    }
+    //a conversion never holds more than one chunk (or its queued ranges), or the
+    //whole file if it's smaller
+    private int estimatePermits(File file, boolean ranges){
+        long held = ranges ? decoders * 2 * rangeBytes * RANGE_EXPANSION
+                : chunkSize * BYTES_PER_ROW + BUFFER_BYTES;
+        long bytes = Math.min(file.length() * RANGE_EXPANSION, held);
+        return (int)Math.max(1, Math.min(memoryBudget, bytes / KB));
+    }
+
+    private AltaConversionResult failedResult(File file, String folderName, Throwable cause){
+        AltaConversionResult result = new AltaConversionResult(file.getPath(), folderName);
+        if (cause instanceof Exception) result.setFailure((Exception)cause);
+        else result.setFailure(new RuntimeException(cause));
+        return result;
+    }
+    //prints per-file timing and failures
+    public static void printSummary(List<AltaConversionResult> results, long elapsedNanos){
+
+        int failures = 0;
+        System.out.println();
+        for (AltaConversionResult result : results){
+            if (result.failed()) failures++;
+            System.out.println(describe(result));
+        }
+        System.out.println(String.format("Converted %d of %d files in %.3f s",
+                results.size() - failures, results.size(), elapsedNanos / 1e9));
+    }
+    //one summary line per file
+    static String describe(AltaConversionResult result){
+        String name = new File(result.getAltaFileName()).getName();
+        if (result.failed()) return "  FAILED " + name + ": " + result.getFailure();
+        long malformed = result.getMetrics().getMalformedRows();
+        long filtered = result.getMetrics().getFilteredRows();
+        return String.format("  %-40s %10d messages %8.3f s", name,
+                result.getMessages(), result.getElapsedNanos() / 1e9)
+                + (malformed > 0 ? "  (" + malformed + " malformed rows skipped)" : "")
+                + (filtered > 0 ? "  (" + filtered + " rows filtered out)" : "");
+    }
+}
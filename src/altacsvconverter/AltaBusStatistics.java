@@ -0,0 +1,215 @@
+package altacsvconverter;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+//bus health figures of one capture, gathered message by message in constant memory
+//
+//messages, words and errors are counted per bus and RT/sub address (RT-RT transfers count
+//for both command words), gaps go into a log-linear histogram and the bus loading is the
+//time the words of the messages take on the bus (WORD_NANOS each, response times and
+//gaps left out) over the time between the first and last message
+//(not thread safe)
+public class AltaBusStatistics {
+
+    public static final long WORD_NANOS = 20000;   //sync, 16 bits and parity at 1 Mbit/s
+    private static final int KEYS = AltaMessage.KEYS;
+    //upper limits of the gap ranges in the report, in 100ns units
+    private static final long[] GAP_LIMITS = {
+        10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 20000, 50000,
+        100000, 200000, 500000, 1000000, 2000000, 5000000, 10000000
+    };
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+    private static final String[] PERCENTILE_NAMES = {"p50", "p90", "p99", "p99.9"};
+
+    //per bus (A first) and key (rt << 5 | sub address)
+    private final long[] keyMessages = new long[2 * KEYS];
+    private final long[] keyWords = new long[2 * KEYS];     //data words
+    private final long[] keyErrors = new long[2 * KEYS];    //messages with an error bit set
+    private final long[] busMessages = new long[2];
+    private final long[] busWords = new long[2];            //every word on the bus
+    private final long[] typeCounts = new long[AltaMessage.TYPE_BITS.length];
+    //in the order of AltaMessage.ERROR_NAMES
+    private final long[] errorCounts = new long[AltaMessage.ERROR_BITS.length];
+    private long noErrorCount;
+    private long spuriousCount;
+    private final long[] modeCodeCounts = new long[32];
+    private final AltaHistogram gaps = new AltaHistogram();     //100ns units
+    private long messages = 0;
+    private long earliestNanos = Long.MAX_VALUE;
+    private long latestNanos = Long.MIN_VALUE;
+
+    public void add(AltaMessage message){
+
+        int cdp = message.cdp;
+        int bus = message.isBusA() ? 0 : 1;
+        boolean errors = (cdp & AltaMessage.ERROR_MASK) != 0;
+        int dataWords = message.getDataWordsUsed();
+
+        int first = bus * KEYS + AltaMessage.key(message.command[0]);
+        count(first, dataWords, errors);
+        if (message.isRTtoRT()){
+            int second = bus * KEYS + AltaMessage.key(message.command[1]);
+            if (second != first) count(second, dataWords, errors);
+        }
+
+        //RT-RT has two commands and statuses, broadcast receivers don't answer
+        int commands = message.isRTtoRT() ? 2 : 1;
+        int statuses = message.isRTtoRT() ? 2 : 1;
+        if (message.isBroadcast()) statuses--;
+        if ((cdp & AltaMessage.CDP_NO_RESPONSE) != 0) statuses = 0;
+        busMessages[bus]++;
+        busWords[bus] += commands + statuses + dataWords;
+
+        for (int type=0;type < AltaMessage.TYPE_BITS.length;type++){
+            if ((cdp & AltaMessage.TYPE_BITS[type]) != 0) typeCounts[type]++;
+        }
+        //SPURIOUS replaces NO ERROR, as in messageErrors
+        if ((cdp & AltaMessage.CDP_SPURIOUS) != 0) spuriousCount++;
+        else if ((cdp & AltaMessage.CDP_NO_ERROR) != 0) noErrorCount++;
+        if (errors){
+            for (int error=0;error < errorCounts.length;error++){
+                if ((cdp & AltaMessage.ERROR_BITS[error]) != 0) errorCounts[error]++;
+            }
+        }
+        if (message.isModeCode()) modeCodeCounts[message.getModeCode()]++;
+
+        gaps.record(message.messageGap);
+        long nanos = message.getEpochNanos();
+        if (nanos < earliestNanos) earliestNanos = nanos;
+        if (nanos > latestNanos) latestNanos = nanos;
+        messages++;
+    }
+
+    private void count(int key, int dataWords, boolean errors){
+        keyMessages[key]++;
+        keyWords[key] += dataWords;
+        if (errors) keyErrors[key]++;
+    }
+
+    public long getMessageCount(){
+        return messages;
+    }
+    //between the first and last message, 0 for fewer than two
+    public double getSeconds(){
+        return messages < 2 ? 0 : (latestNanos - earliestNanos) / 1e9;
+    }
+    //share of the time the bus was carrying words, in percent
+    public double getLoadPercent(boolean busA){
+        long span = latestNanos - earliestNanos;
+        if (messages < 2 || span <= 0) return 0;
+        return 100.0 * busWords[busA ? 0 : 1] * WORD_NANOS / span;
+    }
+
+    public AltaHistogram getGaps(){
+        return gaps;
+    }
+
+    private double perSecond(long count){
+        double seconds = getSeconds();
+        return seconds > 0 ? count / seconds : 0;
+    }
+
+    private static String time(long epochNanos){
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(epochNanos, AltaTimestamp.NANOS_PER_SECOND),
+                (int)Math.floorMod(epochNanos, AltaTimestamp.NANOS_PER_SECOND), ZoneOffset.UTC).toString();
+    }
+    //writes the report as one json object, addresses and mode codes that never showed up
+    //are left out
+    public void writeJSON(AltaOutputBuffer output) throws IOException{
+
+        output.writeAscii("{\"messages\":");
+        output.writeLong(messages);
+        if (messages > 0){
+            output.writeAscii(",\"from\":\"" + time(earliestNanos) + "\",\"to\":\"" + time(latestNanos) + "\"");
+        }
+        output.writeAscii(",\"seconds\":" + getSeconds());
+
+        output.writeAscii(",\"buses\":{");
+        for (int bus=0;bus < 2;bus++){
+            output.writeAscii(bus == 0 ? "\"A\":{\"messages\":" : ",\"B\":{\"messages\":");
+            output.writeLong(busMessages[bus]);
+            output.writeAscii(",\"words\":");
+            output.writeLong(busWords[bus]);
+            output.writeAscii(",\"messagesPerSecond\":" + perSecond(busMessages[bus])
+                    + ",\"loadPercent\":" + getLoadPercent(bus == 0) + "}");
+        }
+
+        output.writeAscii("},\"types\":{");
+        for (int type=0;type < AltaMessage.TYPE_BITS.length;type++){
+            output.writeAscii((type == 0 ? "\"" : ",\"") + AltaMessage.TYPE_NAMES[type] + "\":");
+            output.writeLong(typeCounts[type]);
+        }
+
+        output.writeAscii("},\"errors\":{\"NO ERROR\":");
+        output.writeLong(noErrorCount);
+        output.writeAscii(",\"SPURIOUS\":");
+        output.writeLong(spuriousCount);
+        for (int error=0;error < errorCounts.length;error++){
+            output.writeAscii(",\"" + AltaMessage.ERROR_NAMES[error] + "\":");
+            output.writeLong(errorCounts[error]);
+        }
+
+        output.writeAscii("},\"modeCodes\":[");
+        boolean first = true;
+        for (int modeCode=0;modeCode < modeCodeCounts.length;modeCode++){
+            if (modeCodeCounts[modeCode] == 0) continue;
+            output.writeAscii((first ? "" : ",") + "{\"modeCode\":" + modeCode + ",\"description\":\""
+                    + AltaMessageDecoder.describeModeCode(modeCode) + "\",\"count\":");
+            output.writeLong(modeCodeCounts[modeCode]);
+            output.write('}');
+            first = false;
+        }
+
+        output.writeAscii("],\"gaps\":");
+        writeGaps(output);
+
+        output.writeAscii(",\"addresses\":[");
+        first = true;
+        for (int key=0;key < keyMessages.length;key++){
+            if (keyMessages[key] == 0) continue;
+            output.writeAscii((first ? "" : ",") + "{\"bus\":\"" + (key < KEYS ? 'A' : 'B')
+                    + "\",\"rt\":" + (key % KEYS >>> 5) + ",\"sa\":" + (key & AltaMessage.FIELD_MASK) + ",\"messages\":");
+            output.writeLong(keyMessages[key]);
+            output.writeAscii(",\"dataWords\":");
+            output.writeLong(keyWords[key]);
+            output.writeAscii(",\"errors\":");
+            output.writeLong(keyErrors[key]);
+            output.writeAscii(",\"messagesPerSecond\":" + perSecond(keyMessages[key]) + "}");
+            first = false;
+        }
+        output.writeAscii("]}");
+    }
+    //gaps in microseconds as messageGap is written, ranges from the histogram are within
+    //1/64 of their limits above 12.8
+    private void writeGaps(AltaOutputBuffer output) throws IOException{
+
+        output.writeAscii("{\"count\":");
+        output.writeLong(gaps.getCount());
+        output.writeAscii(",\"minMicros\":");
+        output.writeTenths(gaps.getMin());
+        output.writeAscii(",\"meanMicros\":" + gaps.getMean() / 10);
+        output.writeAscii(",\"maxMicros\":");
+        output.writeTenths(gaps.getMax());
+        output.writeAscii(",\"percentiles\":{");
+        for (int index=0;index < PERCENTILES.length;index++){
+            output.writeAscii((index == 0 ? "\"" : ",\"") + PERCENTILE_NAMES[index] + "\":");
+            output.writeTenths(gaps.getValueAtPercentile(PERCENTILES[index]));
+        }
+
+        output.writeAscii("},\"histogram\":[");
+        long below = 0;
+        for (int index=0;index <= GAP_LIMITS.length;index++){
+            long upTo = index < GAP_LIMITS.length ? gaps.getCountBelow(GAP_LIMITS[index]) : gaps.getCount();
+            output.writeAscii(index == 0 ? "{\"belowMicros\":" : ",{\"belowMicros\":");
+            if (index < GAP_LIMITS.length) output.writeTenths(GAP_LIMITS[index]);
+            else output.writeAscii("null");
+            output.writeAscii(",\"count\":");
+            output.writeLong(upTo - below);
+            output.write('}');
+            below = upTo;
+        }
+        output.writeAscii("]}");
+    }
+}
@@ -7,179 +7,179 @@ package altacsvconverter;
 
 import java.io.File;
 import java.io.FilenameFilter;
-import java.io.FileWriter;
-import java.nio.file.Files;
+import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Scanner;
+import java.util.ArrayList;
+import java.util.List;
 
 public class AltaCSVConverter {
     
     public static void main(String[] args) {
         
-        String folderName;
-        boolean json;
-        boolean csv;
+        String folderName = ".";
+        boolean json = false;
+        boolean csv = false;
+        boolean columnar = false;
+        boolean watch = false;
+        boolean skipMalformed = false;
+        boolean numericWords = false;
+        boolean store = false;
+        boolean stats = false;
+        boolean gzip = false;
+        AltaMessageFilter filter = null;
+        String metricsFile = null;
+        int servePort = -1;             //-1 converts the folder instead of serving
+        int chunkSize = AltaStreamConverter.DEFAULT_CHUNK_SIZE;
+        int threads = 1;
+        int decoders = 1;
+        long rangeBytes = AltaRangeConverter.DEFAULT_RANGE_BYTES;
         
-        //output file headers
-        String[] headers = {
-            "timestamp" ,
-            "messageType" ,
-            "messageBus" ,
-            "RTAddress_0" ,
-            "RTAddress_1" ,
-            "RTSubAddress_0" ,
-            "RTSubAddress_1" ,
-            "messageFlow_0" ,
-            "messageFlow_1" ,
-            "messageGap" ,
-            "messageValidity_0" ,
-            "messageValidity_1" ,
-            "messageErrors" ,
-            "modeCodeDesc" ,
-            "modeCodeWord" ,
-            "dataWordCount" ,
-            "dataWords"
-        };
-                
-        if (args.length == 0){
-            folderName = ".";
-            json = true;
-            csv = false;
+        //-json, -csv, -columnar, -store and -stats pick the outputs, several can be written in one pass
+        //-store output is an indexed binary store, queried with AltaStoreReader
+        //-stats writes rates, gap histograms, error and mode code counts and bus loading
+        //of each capture (.stats.json), see AltaBusStatistics. with -watch rows appended
+        //to a capture get a report of their own, the counts cover only those rows
+        //-gzip compresses the json and csv outputs (.json.gz, .csv.gz), gzipped captures
+        //(.csv.gz) are read with or without it
+        //-numericWords writes json data words as an array of numbers instead of hex (json
+        //output only, it can be combined with the other outputs)
+        //-where <terms> converts only the matching rows, see AltaMessageFilter
+        //-columns <names> writes only the named columns, in that order
+        //-chunk <rows> sets how many rows are held in memory at once
+        //-threads <n> converts up to n files at once
+        //-decoders <n> splits each file into ranges of -range <MB> decoded on n threads
+        //-watch keeps running and converts captures as they arrive or grow, gzipped captures
+        //are converted again whole whenever they change
+        //-skipMalformed counts and skips rows that can't be parsed instead of failing the file
+        //-metrics <file> writes stage times, rates and error counts as json
+        //-serve <port> keeps running and converts captures posted to http://localhost:<port>
+        //on -threads threads, see AltaConversionServer. captures converted in place must be
+        //under the folder given
+        for (int arg=0;arg < args.length;arg++){
+            if (args[arg].equals("-json")) json = true;
+            else if (args[arg].equals("-csv")) csv = true;
+            else if (args[arg].equals("-columnar")) columnar = true;
+            else if (args[arg].equals("-store")) store = true;
+            else if (args[arg].equals("-stats")) stats = true;
+            else if (args[arg].equals("-gzip")) gzip = true;
+            else if (args[arg].equals("-watch")) watch = true;
+            else if (args[arg].equals("-skipMalformed")) skipMalformed = true;
+            else if (args[arg].equals("-numericWords")) numericWords = true;
+            else if ((args[arg].equals("-where") || args[arg].equals("-columns")) && arg+1 < args.length){
+                if (filter == null) filter = new AltaMessageFilter();
+                try{
+                    if (args[arg].equals("-where")) filter.where(args[++arg]);
+                    else filter.columns(args[++arg]);
+                } catch (IllegalArgumentException badFilter){
+                    System.out.println(badFilter.getMessage());
+                    return;
+                }
+            }
+            else if (args[arg].equals("-metrics") && arg+1 < args.length){
+                metricsFile = args[++arg];
+            }
+            else if (args[arg].equals("-serve") && arg+1 < args.length){
+                servePort = Integer.parseInt(args[++arg]);
+            }
+            else if (args[arg].equals("-chunk") && arg+1 < args.length){
+                chunkSize = Integer.parseInt(args[++arg]);
+            }
+            else if (args[arg].equals("-threads") && arg+1 < args.length){
+                threads = Integer.parseInt(args[++arg]);
+            }
+            else if (args[arg].equals("-decoders") && arg+1 < args.length){
+                decoders = Integer.parseInt(args[++arg]);
+            }
+            else if (args[arg].equals("-range") && arg+1 < args.length){
+                rangeBytes = Long.parseLong(args[++arg]) << 20;
+            }
+            else folderName = args[arg];
         }
         
-        else folderName = args[0];
-                
-        File[] files = new File(folderName).listFiles(new FilenameFilter(){ 
-            @Override public boolean accept(File dir, String name) 
-            { return name.endsWith(".csv"); } });
-        if (files==null) System.out.println("Folder '" + args[0] + "' does not exist.");
-        else{
-            if (files.length==0) System.out.println(
-                    "No csv files found. This program runs in the current directory "
-                            + "unless a path is specified as an argument.");
-
-            for (File file : files){
-
-                String fileName = file.getName();
-                String[][] altaMatrix = AltaCSVToMatrix(folderName + "/" + fileName);
-
-                AltaDataFrame dataFrame = new AltaDataFrame(altaMatrix); 
-                String[][] DFMatrix = dataFrame.getOutputMatrix();
-
-                //DFMatrixToCSV(DFMatrix,headers,altaMatrix.length,folderName);
-                DFMatrixToJSON(DFMatrix,headers,altaMatrix.length,folderName);
-            }
+        List<AltaOutputFormat> selected = new ArrayList<>();
+        if (json || (!csv && !columnar && !store && !stats)) selected.add(AltaOutputFormat.JSON);
+        //only json writes data words as numbers, anything else would silently ignore it
+        if (numericWords && !selected.contains(AltaOutputFormat.JSON)){
+            System.out.println("-numericWords only applies to -json output");
+            return;
+        }
+        if (csv) selected.add(AltaOutputFormat.CSV);
+        if (columnar) selected.add(AltaOutputFormat.COLUMNAR);
+        if (store) selected.add(AltaOutputFormat.STORE);
+        if (stats) selected.add(AltaOutputFormat.STATS);
+        //the store keeps every field whatever -columns says
+        if (store && filter != null) filter.keepDataWords();
+        List<AltaSinkFactory> formats = new ArrayList<>();
+        for (AltaOutputFormat format : selected){
+            formats.add(filter == null && !gzip && !numericWords ? format : format.configure(filter, gzip, numericWords));
         }
         
-    }
-    //writes the dataframe to .json
-    private static void DFMatrixToJSON(String[][] DFMatrix, String[] headers, int numLines, String folderName){
-                    
-        FileWriter json;
+        AltaMetrics metrics = new AltaMetrics();
+        metrics.register();
+        Path metricsPath = metricsFile == null ? null : Paths.get(metricsFile);
         
-        try{
-            //create output directory if it doesn't exist
-            Path outputPath = Paths.get(folderName + "/alta1553");
-            if (Files.notExists(outputPath)){
-                File outputDir = new File(folderName + "/alta1553");
-                outputDir.mkdir();
-            }
-            //output files using predefined header with timestamp
-            String filePath = folderName + "/alta1553/alta1553_" + DFMatrix[0][0].substring(0,19).replace(":","") + ".json";
-            json = new FileWriter(new File(filePath));
-            
-            System.out.println("Writing " + filePath + "...");
-                       
-            //output matrix contents
-            for(int row=0;row<numLines;row++){
-                json.write("{");
-                for(int col=0;col<DFMatrix.length;col++){
-                    json.write("\"" + headers[col] + "\":\"");
-                    json.write(DFMatrix[col][row] + "\"");
-                    if(col!=DFMatrix.length-1) json.write(",");
-                }            
-                json.write("}" + System.lineSeparator());
+        //outputs and filters are picked per request
+        if (servePort >= 0){
+            try{
+                AltaConversionServer server = new AltaConversionServer(servePort, threads, chunkSize,
+                        skipMalformed, metrics, Paths.get(folderName));
+                server.start();
+                System.out.println("Converting captures posted to http://localhost:" + server.getPort() + "/");
+            } catch (IOException failure){
+                System.out.println("Serving on port " + servePort + " failed: " + failure);
             }
-
-            json.close();
-            
-        } catch (Exception message){
-            message.printStackTrace();
+            return;
         }
-    }
-    //writes the dataframe to .csv
-    private static void DFMatrixToCSV(String[][] DFMatrix, String[] headers, int numLines, String folderName){
-        FileWriter csv;
         
-        try{
-            //create output directory if it doesn't exist
-            Path outputPath = Paths.get(folderName + "/alta1553");
-            if (Files.notExists(outputPath)){
-                File outputDir = new File(folderName + "/alta1553");
-                outputDir.mkdir();
+        if (watch){
+            if (!new File(folderName).isDirectory()){
+                System.out.println("Folder '" + folderName + "' does not exist.");
+                return;
             }
-            //output files using predefined header with timestamp
-            String filePath = folderName + "/alta1553/alta1553_" + DFMatrix[0][0].substring(0,19).replace(":","") + ".csv";
-            csv = new FileWriter(new File(filePath));
-            
-            System.out.println("Writing " + filePath + "...");
-            
-            //create header row
-            for(int col=0;col < headers.length;col++){
-                csv.write(headers[col]);
-                if(col!=headers.length -1) csv.write(",");
+            try{
+                AltaFolderWatcher watcher = new AltaFolderWatcher(formats, chunkSize, folderName);
+                watcher.setSkipMalformed(skipMalformed);
+                watcher.setFilter(filter);
+                watcher.setMetrics(metrics, metricsPath);
+                watcher.watch();
+            } catch (IOException failure){
+                System.out.println("Watching '" + folderName + "' failed: " + failure);
+            } catch (InterruptedException stopped){
+                Thread.currentThread().interrupt();
             }
-            
-            csv.write(System.lineSeparator());
-            //output matrix contents
-            for(int row=0;row<numLines;row++){            
-                for(int col=0;col<DFMatrix.length;col++){
-                    csv.write(DFMatrix[col][row]);
-                    if(col!=DFMatrix.length-1) csv.write(",");
-                }          
-                csv.write(System.lineSeparator());
-            }
-            csv.close();
-            
-        } catch (Exception message){
-            message.printStackTrace();
+            return;
         }
-    }
-    //Reads an Alta .csv and imports it as a 2D matrix of strings
-    private static String[][] AltaCSVToMatrix(String altaFileName) {
-        
-        File altaFile = new File(altaFileName);
-        String[][] altaMatrix = new String[1][1];
-        
-        try{
-            //Get the number of lines in the file to initialize the correct 
-            //number of rows
-            Path altaPath = Paths.get(altaFileName);
-            long altaFileLines = Files.lines(altaPath).count();
-            altaMatrix = new String[(int)altaFileLines-1][];
-            
-            //Open an input stream for the .csv
-            Scanner altaStream = new Scanner(altaFile);
-            
-            //Counter for matrix population
-            int matrixRow = 0;
-            
-            //Pop the first line of the stream
-            altaStream.nextLine();
-            
-            //Read each line as a new row in the matrix
-            while (altaStream.hasNextLine()){     
-                altaMatrix[matrixRow] = altaStream.nextLine().split(", |,");
-                matrixRow++;
+                
+        File[] files = new File(folderName).listFiles(new FilenameFilter(){ 
+            @Override public boolean accept(File dir, String name) 
+            { return AltaStreamConverter.isCapture(name); } });
+        if (files==null) System.out.println("Folder '" + folderName + "' does not exist.");
+        else{
+            if (files.length==0) System.out.println(
+                    "No csv files found. This program runs in the current directory "
+                            + "unless a path is specified as an argument.");
+
+            //rows flow reader -> decoder -> writer one chunk at a time, one file per thread
+            else{
+                long start = System.nanoTime();
+                AltaBatchConverter converter = new AltaBatchConverter(formats, chunkSize,
+                        threads, decoders, rangeBytes);
+                converter.setSkipMalformed(skipMalformed);
+                converter.setFilter(filter);
+                converter.setMetrics(metrics);
+                List<AltaConversionResult> results = converter.convert(files, folderName);
+                long elapsed = System.nanoTime() - start;
+                AltaBatchConverter.printSummary(results, elapsed);
+                if (metricsPath != null){
+                    try{
+                        metrics.writeSummary(metricsPath, results, elapsed);
+                    } catch (IOException failure){
+                        System.out.println("Writing metrics to '" + metricsFile + "' failed: " + failure);
+                    }
+                }
             }
-            altaStream.close();
-        //I don't do error handling :/
-        } catch (Exception message){
-            message.printStackTrace(); 
         }
-        //Return 2D 
-        return altaMatrix;
+        
     }
-    
 }
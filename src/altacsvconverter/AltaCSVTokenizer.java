@@ -0,0 +1,265 @@
+package altacsvconverter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+//reads alta csv rows through a reusable buffer and parses the numeric fields straight
+//from the bytes into an AltaMessage
+//(not thread safe, use one tokenizer per thread)
+public class AltaCSVTokenizer {
+
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+    private final ReadableByteChannel channel;
+    private byte[] bytes;               //read buffer, grown if a line doesn't fit
+    private int position = 0;           //start of the next unread line
+    private int limit = 0;              //end of the buffered bytes
+    private long remaining;             //bytes left to read from the channel
+    private boolean eof = false;
+
+    private int cursor;                 //parse position inside the current line
+    private long lineNumber = 0;        //lines consumed so far, including the header
+    private long startOffset = 0;       //file offset of the channel's first byte
+    private boolean skipMalformed = false;
+    private long malformedRows = 0;     //rows skipped because they couldn't be parsed
+    private AltaMessageFilter filter;   //rows to keep, null for all of them
+    private boolean parseDataWords = true;  //false if no selected column shows them
+    private long filteredRows = 0;      //rows rejected by the filter
+    private long readNanos = 0;         //time spent reading the channel
+    private long bytesRead = 0;
+    private final AltaTimestamp timestamps = new AltaTimestamp();
+
+    //reads every byte of channel
+    public AltaCSVTokenizer(ReadableByteChannel channel, int bufferSize){
+        this(channel, bufferSize, Long.MAX_VALUE);
+    }
+    //reads at most length bytes of channel from its current position
+    public AltaCSVTokenizer(ReadableByteChannel channel, int bufferSize, long length){
+        this.channel = channel;
+        this.bytes = new byte[bufferSize];
+        this.remaining = length;
+    }
+    //discards the next line (the csv header), returns false at end of input
+    public boolean skipLine() throws IOException{
+        int end = nextLineEnd();
+        if (end < 0) return false;
+        consumeLine(end);
+        return true;
+    }
+    //file offset the channel starts at (a range or the rows appended to a capture), line
+    //numbers are counted from there so errors name the byte offset of the row as well
+    public void setStartOffset(long startOffset){
+        this.startOffset = startOffset;
+    }
+    //counts and skips rows that can't be parsed instead of throwing NumberFormatException
+    public void setSkipMalformed(boolean skipMalformed){
+        this.skipMalformed = skipMalformed;
+    }
+    //skips rows the filter rejects, and the data words if none of its columns show them
+    //(they aren't checked for errors then)
+    public void setFilter(AltaMessageFilter filter){
+        this.filter = filter;
+        this.parseDataWords = filter == null || filter.needsDataWords();
+    }
+    //parses the next non-empty row into message, returns false at end of input
+    public boolean next(AltaMessage message) throws IOException{
+
+        while (true){
+            int end = nextLineEnd();
+            if (end < 0) return false;
+
+            int start = position;
+            int lineEnd = end;
+            if (lineEnd > start && bytes[lineEnd-1] == '\r') lineEnd--;
+            consumeLine(end);
+
+            if (lineEnd > start){
+                try{
+                    if (parseLine(start, lineEnd, message)) return true;
+                    filteredRows++;
+                } catch (NumberFormatException malformed){
+                    if (!skipMalformed) throw malformed;
+                    malformedRows++;
+                }
+            }
+        }
+    }
+
+    public long getLineNumber(){
+        return lineNumber;
+    }
+
+    public long getMalformedRows(){
+        return malformedRows;
+    }
+
+    public long getFilteredRows(){
+        return filteredRows;
+    }
+
+    public long getReadNanos(){
+        return readNanos;
+    }
+
+    public long getBytesRead(){
+        return bytesRead;
+    }
+    //index of the newline ending the buffered line (or the end of input), -1 if none left
+    private int nextLineEnd() throws IOException{
+
+        int scan = position;
+        while (true){
+            for (;scan < limit;scan++){
+                if (bytes[scan] == '\n') return scan;
+            }
+            if (eof) return position < limit ? limit : -1;
+            scan = fill();
+        }
+    }
+
+    private void consumeLine(int end){
+        position = Math.min(end + 1, limit);
+        lineNumber++;
+    }
+    //moves the unread bytes to the front, reads more and returns where scanning resumes
+    private int fill() throws IOException{
+
+        int unread = limit - position;
+        if (position == 0 && limit == bytes.length){
+            byte[] grown = new byte[bytes.length * 2];
+            System.arraycopy(bytes, 0, grown, 0, limit);
+            bytes = grown;
+        }
+        else if (position > 0){
+            System.arraycopy(bytes, position, bytes, 0, unread);
+            position = 0;
+            limit = unread;
+        }
+
+        long start = System.nanoTime();
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, limit, (int)Math.min(bytes.length - limit, remaining));
+        int read = buffer.remaining() == 0 ? -1 : channel.read(buffer);
+        while (read == 0) read = channel.read(buffer);
+        if (read < 0) eof = true;
+        else {
+            limit += read;
+            remaining -= read;
+            bytesRead += read;
+        }
+        readNanos += System.nanoTime() - start;
+        return unread;
+    }
+    //TimeStamp, TimeHigh, TimeLow, IMGap, CMD1, CMD2, STS1, STS2, DATA01-32, CDPStatusWord
+    //returns false if the filter rejects the row
+    private boolean parseLine(int start, int end, AltaMessage message){
+
+        cursor = start;
+
+        //the timestamp is decoded straight from the bytes, the filter's time window is
+        //checked before any other field is parsed
+        int timeStart = skipSpaces(cursor, end);
+        int timeEnd = timeStart;
+        while (timeEnd < end && bytes[timeEnd] != ',') timeEnd++;
+        cursor = timeEnd;
+        while (timeEnd > timeStart && bytes[timeEnd-1] == ' ') timeEnd--;
+        try{
+            timestamps.parse(bytes, timeStart, timeEnd, message);
+        } catch (NumberFormatException badTime){
+            throw malformed(start, end);
+        }
+        if (filter != null && !filter.acceptsTime(message.getEpochNanos())) return false;
+
+        //TimeHigh and TimeLow aren't used
+        skipField(start, end);
+        skipField(start, end);
+
+        message.messageGap = parseField(start, end);
+        message.command[0] = (int)parseField(start, end);
+        message.command[1] = (int)parseField(start, end);
+        message.status[0] = (int)parseField(start, end);
+        message.status[1] = (int)parseField(start, end);
+
+        //the CDP word ends the row, it's parsed ahead of the data words so rejected rows skip them
+        if (filter != null){
+            message.cdp = parseLastField(start, end);
+            if (!filter.accepts(message.command[0], message.command[1], message.cdp)) return false;
+            //the data words are left unparsed, but the row still has to have all its fields
+            if (!parseDataWords){
+                if (countSeparators(cursor, end) != AltaMessage.MAX_DATA_WORDS + 1) throw malformed(start, end);
+                return true;
+            }
+        }
+
+        for (int word=0;word < AltaMessage.MAX_DATA_WORDS;word++){
+            long value = parseField(start, end);
+            if (value < 0 || value > AltaMessage.MAX_WORD) throw malformed(start, end);
+            message.dataWords[word] = (char)value;
+        }
+        message.cdp = (int)parseField(start, end);
+
+        if (cursor != end) throw malformed(start, end);
+        return true;
+    }
+    //parses the field after the last separator, leaves cursor where it was
+    private int parseLastField(int start, int end){
+        int resume = cursor;
+        int separator = end - 1;
+        while (separator > cursor && bytes[separator] != ',') separator--;
+        cursor = separator;
+        long value = parseField(start, end);
+        cursor = resume;
+        return (int)value;
+    }
+    //cursor sits on the separator ending the previous field
+    private void skipField(int start, int end){
+        if (cursor >= end) throw malformed(start, end);
+        cursor++;
+        while (cursor < end && bytes[cursor] != ',') cursor++;
+    }
+    //parses the integer field after the separator at cursor
+    private long parseField(int start, int end){
+
+        if (cursor >= end) throw malformed(start, end);
+        int index = skipSpaces(cursor + 1, end);
+
+        boolean negative = index < end && bytes[index] == '-';
+        if (negative) index++;
+
+        int digitsStart = index;
+        long value = 0;
+        while (index < end && bytes[index] >= '0' && bytes[index] <= '9'){
+            value = value * 10 + (bytes[index] - '0');
+            index++;
+        }
+        if (index == digitsStart || index - digitsStart > 18) throw malformed(start, end);
+
+        index = skipSpaces(index, end);
+        if (index < end && bytes[index] != ',') throw malformed(start, end);
+        cursor = index;
+        return negative ? -value : value;
+    }
+
+    private int countSeparators(int index, int end){
+        int separators = 0;
+        for (;index < end;index++){
+            if (bytes[index] == ',') separators++;
+        }
+        return separators;
+    }
+
+    private int skipSpaces(int index, int end){
+        while (index < end && bytes[index] == ' ') index++;
+        return index;
+    }
+
+    //the row is still buffered, its file offset follows from what was read behind it
+    private NumberFormatException malformed(int start, int end){
+        String where = startOffset == 0 ? "line " + lineNumber
+                : "byte " + (startOffset + bytesRead - (limit - start))
+                + " (line " + lineNumber + " of the rows from byte " + startOffset + ")";
+        return new NumberFormatException("Malformed alta row at " + where + ": "
+                + new String(bytes, start, end - start, StandardCharsets.ISO_8859_1));
+    }
+}
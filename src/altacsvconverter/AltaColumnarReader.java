@@ -0,0 +1,218 @@
+package altacsvconverter;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+//reads a columnar file written by AltaColumnarWriter, one column chunk at a time so
+//only the requested columns are read from disk
+public class AltaColumnarReader implements Closeable {
+
+    private final FileChannel channel;
+    private final String[] columnNames;
+    private final byte[] columnTypes;
+    private final int[] groupRows;      //rows in each row group
+    private final long[][] offsets;     //[group][column] chunk offset
+    private final int[][] compressed;   //[group][column] compressed chunk length
+    private final int[][] raw;          //[group][column] inflated chunk length
+
+    public AltaColumnarReader(Path path) throws IOException{
+
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        try{
+            int magicLength = AltaColumnarWriter.MAGIC.length;
+            long size = channel.size();
+            if (size < 2 * magicLength + 4) throw new IOException(path + " is not a columnar alta file");
+
+            ByteBuffer tail = read(size - magicLength - 4, magicLength + 4);
+            int footerLength = tail.getInt();
+            byte[] magic = new byte[magicLength];
+            tail.get(magic);
+            if (!Arrays.equals(magic, AltaColumnarWriter.MAGIC)) throw new IOException(
+                    path + " is not a columnar alta file");
+
+            ByteBuffer footerBytes = read(size - magicLength - 4 - footerLength, footerLength);
+            DataInputStream footer = new DataInputStream(new ByteArrayInputStream(
+                    footerBytes.array(), 0, footerLength));
+
+            int version = footer.readInt();
+            if (version < 1 || version > AltaColumnarWriter.VERSION) throw new IOException(
+                    path + " has unsupported version " + version);
+
+            int columns = footer.readInt();
+            columnNames = new String[columns];
+            columnTypes = new byte[columns];
+            for (int col=0;col < columns;col++){
+                columnNames[col] = footer.readUTF();
+                columnTypes[col] = footer.readByte();
+            }
+
+            int groups = footer.readInt();
+            groupRows = new int[groups];
+            offsets = new long[groups][columns];
+            compressed = new int[groups][columns];
+            raw = new int[groups][columns];
+            for (int group=0;group < groups;group++){
+                groupRows[group] = footer.readInt();
+                for (int col=0;col < columns;col++){
+                    offsets[group][col] = footer.readLong();
+                    compressed[group][col] = footer.readInt();
+                    raw[group][col] = footer.readInt();
+                }
+            }
+        } catch (IOException | RuntimeException failure){
+            channel.close();
+            throw failure;
+        }
+    }
+
+    public String[] getColumnNames(){
+        return columnNames.clone();
+    }
+
+    public byte getColumnType(String column){
+        return columnTypes[columnIndex(column)];
+    }
+
+    public int getRowGroupCount(){
+        return groupRows.length;
+    }
+
+    public int getRowCount(int group){
+        return groupRows[group];
+    }
+
+    public long getRowCount(){
+        long rows = 0;
+        for (int group : groupRows) rows += group;
+        return rows;
+    }
+
+    public int columnIndex(String column){
+        for (int col=0;col < columnNames.length;col++){
+            if (columnNames[col].equals(column)) return col;
+        }
+        throw new IllegalArgumentException("No column named " + column);
+    }
+    //inflated little endian chunk of column in row group
+    public ByteBuffer readChunk(int group, String column) throws IOException{
+
+        int col = columnIndex(column);
+        ByteBuffer chunk = read(offsets[group][col], compressed[group][col]);
+
+        Inflater inflater = new Inflater();
+        try{
+            inflater.setInput(chunk.array(), 0, compressed[group][col]);
+            byte[] inflated = new byte[raw[group][col]];
+            int length = 0;
+            while (length < inflated.length && !inflater.finished()){
+                int read = inflater.inflate(inflated, length, inflated.length - length);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                length += read;
+            }
+            if (length != inflated.length) throw new IOException("Truncated chunk for " + column);
+            return ByteBuffer.wrap(inflated).order(ByteOrder.LITTLE_ENDIAN);
+        } catch (DataFormatException failure){
+            throw new IOException("Corrupt chunk for " + column, failure);
+        } finally {
+            inflater.end();
+        }
+    }
+    //INT8 column, -1 marks unused values
+    public byte[] readInt8(int group, String column) throws IOException{
+        ByteBuffer chunk = readTyped(group, column, AltaColumnarWriter.INT8);
+        byte[] values = new byte[groupRows[group]];
+        chunk.get(values);
+        return values;
+    }
+    //INT32 column, -1 marks unused values
+    public int[] readInt32(int group, String column) throws IOException{
+        ByteBuffer chunk = readTyped(group, column, AltaColumnarWriter.INT32);
+        int[] values = new int[groupRows[group]];
+        chunk.asIntBuffer().get(values);
+        return values;
+    }
+
+    //INT64 column, the timestamp is in nanoseconds since 1970-01-01T00:00
+    public long[] readInt64(int group, String column) throws IOException{
+        ByteBuffer chunk = readTyped(group, column, AltaColumnarWriter.INT64);
+        long[] values = new long[groupRows[group]];
+        chunk.asLongBuffer().get(values);
+        return values;
+    }
+
+    public double[] readFloat64(int group, String column) throws IOException{
+        ByteBuffer chunk = readTyped(group, column, AltaColumnarWriter.FLOAT64);
+        double[] values = new double[groupRows[group]];
+        chunk.asDoubleBuffer().get(values);
+        return values;
+    }
+    //STRING or DICTIONARY column
+    public String[] readStrings(int group, String column) throws IOException{
+
+        int rows = groupRows[group];
+        String[] values = new String[rows];
+        byte type = getColumnType(column);
+        ByteBuffer chunk = readChunk(group, column);
+
+        //only version 1 files have STRING columns (the timestamp), kept so they can still be read
+        if (type == AltaColumnarWriter.STRING){
+            int data = 4 * (rows + 1);
+            for (int row=0;row < rows;row++){
+                int start = chunk.getInt(4 * row);
+                int end = chunk.getInt(4 * (row + 1));
+                values[row] = new String(chunk.array(), data + start, end - start, StandardCharsets.UTF_8);
+            }
+            return values;
+        }
+
+        if (type != AltaColumnarWriter.DICTIONARY) throw new IllegalArgumentException(
+                column + " is not a string column");
+        String[] dictionary = new String[chunk.getInt()];
+        for (int index=0;index < dictionary.length;index++){
+            byte[] value = new byte[chunk.getInt()];
+            chunk.get(value);
+            dictionary[index] = new String(value, StandardCharsets.UTF_8);
+        }
+        for (int row=0;row < rows;row++) values[row] = dictionary[chunk.getShort()];
+        return values;
+    }
+    //UINT16_LIST column, MAX_DATA_WORDS words per row (use dataWordCount for the length)
+    public char[] readUInt16List(int group, String column) throws IOException{
+        ByteBuffer chunk = readTyped(group, column, AltaColumnarWriter.UINT16_LIST);
+        char[] values = new char[groupRows[group] * AltaMessage.MAX_DATA_WORDS];
+        chunk.asCharBuffer().get(values);
+        return values;
+    }
+
+    private ByteBuffer readTyped(int group, String column, byte type) throws IOException{
+        if (getColumnType(column) != type) throw new IllegalArgumentException(
+                column + " is not of type " + type);
+        return readChunk(group, column);
+    }
+
+    private ByteBuffer read(long position, int length) throws IOException{
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()){
+            if (channel.read(buffer, position + buffer.position()) < 0) throw new IOException(
+                    "Unexpected end of file");
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    @Override
+    public void close() throws IOException{
+        channel.close();
+    }
+}
@@ -0,0 +1,36 @@
+package altacsvconverter;
+
+import java.io.IOException;
+
+//writes compressed columnar files (.a1553c), see AltaColumnarWriter
+public class AltaColumnarSink implements AltaOutputSink {
+
+    private final int[] columns;        //indexes into AltaMessage.HEADERS
+    private AltaColumnarWriter writer;
+
+    public AltaColumnarSink(){
+        this(AltaMessage.allColumns());
+    }
+
+    public AltaColumnarSink(int[] columns){
+        this.columns = columns.clone();
+    }
+
+    //a finished columnar file can't be appended to, so rows appended to a capture get
+    //a file of their own named after the first of them
+    @Override
+    public void open(AltaOutputFiles files) throws IOException{
+        writer = new AltaColumnarWriter(files.create(".a1553c"), AltaMessage.HEADERS, columns);
+    }
+
+    @Override
+    public void writeBatch(AltaMessage[] batch, int count) throws IOException{
+        for (int row=0;row < count;row++) writer.write(batch[row]);
+    }
+
+    @Override
+    public void close() throws IOException{
+        if (writer != null) writer.close();
+        writer = null;
+    }
+}
@@ -0,0 +1,283 @@
+package altacsvconverter;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+//writes decoded messages as a columnar binary file (.a1553c)
+//
+//the file is split into row groups, each holding one chunk per column, so a reader can
+//load only the columns it needs. chunks are little endian and deflate compressed:
+//  "A1553COL" | column chunks... | footer | footer length (int) | "A1553COL"
+//the footer is written with DataOutputStream: version, column count, per column the
+//name and type, row group count, per row group the row count and per column the chunk
+//offset, compressed and raw length (see AltaColumnarReader). a file can hold any subset
+//of the columns, readers find them by name
+public class AltaColumnarWriter implements Closeable {
+
+    public static final int VERSION = 2;      //1 stored the timestamp as a STRING
+    public static final int DEFAULT_ROW_GROUP = 1 << 16;
+    static final byte[] MAGIC = "A1553COL".getBytes(StandardCharsets.US_ASCII);
+
+    //column types
+    public static final byte INT8 = 1;          //one signed byte per row, -1 if unused
+    public static final byte INT32 = 2;         //one int per row, -1 if unused
+    public static final byte FLOAT64 = 3;       //one double per row
+    public static final byte STRING = 4;        //int offsets (rows + 1) then UTF-8 bytes, version 1 only
+    public static final byte DICTIONARY = 5;    //dictionary count, strings, then a short index per row
+    public static final byte UINT16_LIST = 6;   //MAX_DATA_WORDS unsigned shorts per row
+    public static final byte INT64 = 7;         //one long per row
+
+    //type of each output column, indexed as AltaMessage.HEADERS
+    private static final byte[] TYPES = new byte[AltaMessage.HEADERS.length];
+    static {
+        TYPES[AltaMessage.TIMESTAMP] = INT64;       //nanoseconds since 1970-01-01T00:00
+        TYPES[AltaMessage.MESSAGE_TYPE] = DICTIONARY;
+        TYPES[AltaMessage.MESSAGE_BUS] = DICTIONARY;
+        TYPES[AltaMessage.RT_ADDRESS_0] = INT8;
+        TYPES[AltaMessage.RT_ADDRESS_1] = INT8;
+        TYPES[AltaMessage.RT_SUB_ADDRESS_0] = INT8;
+        TYPES[AltaMessage.RT_SUB_ADDRESS_1] = INT8;
+        TYPES[AltaMessage.MESSAGE_FLOW_0] = DICTIONARY;
+        TYPES[AltaMessage.MESSAGE_FLOW_1] = DICTIONARY;
+        TYPES[AltaMessage.MESSAGE_GAP] = FLOAT64;
+        TYPES[AltaMessage.MESSAGE_VALIDITY_0] = DICTIONARY;
+        TYPES[AltaMessage.MESSAGE_VALIDITY_1] = DICTIONARY;
+        TYPES[AltaMessage.MESSAGE_ERRORS] = DICTIONARY;
+        TYPES[AltaMessage.MODE_CODE_DESC] = DICTIONARY;
+        TYPES[AltaMessage.MODE_CODE_WORD] = INT32;
+        TYPES[AltaMessage.DATA_WORD_COUNT] = INT8;
+        TYPES[AltaMessage.DATA_WORDS] = UINT16_LIST;
+    }
+
+    private final String[] headers;
+    private final int[] columns;        //columns written, in file order
+    private final int rowGroup;         //rows per row group
+    private final OutputStream out;
+    private final Deflater deflater;
+    private final ByteArrayOutputStream footer = new ByteArrayOutputStream();
+    private final DataOutputStream footerData = new DataOutputStream(footer);
+
+    private final ByteBuffer[] chunks;  //column chunks of the current row group, null if not written
+    private final List<Map<String, Integer>> dictionaries = new ArrayList<>();
+    private final List<List<String>> dictionaryValues = new ArrayList<>();
+    private int rows = 0;               //rows in the current row group
+    private int rowGroups = 0;
+    private long offset = 0;            //bytes written so far
+
+    //takes ownership of out, only columns (indexes into headers) are computed and written
+    public AltaColumnarWriter(OutputStream out, String[] headers, int[] columns, int rowGroup,
+            int compressionLevel) throws IOException{
+
+        if (headers.length != TYPES.length) throw new IllegalArgumentException(
+                "Expected " + TYPES.length + " headers, got " + headers.length);
+        this.headers = headers;
+        this.columns = columns.clone();
+        this.rowGroup = Math.max(1, rowGroup);
+        this.deflater = new Deflater(compressionLevel);
+
+        chunks = new ByteBuffer[TYPES.length];
+        for (int col=0;col < TYPES.length;col++){
+            dictionaries.add(null);
+            dictionaryValues.add(null);
+        }
+        for (int col : this.columns){
+            chunks[col] = ByteBuffer.allocate(this.rowGroup * rowBytes(TYPES[col]) + 4)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            if (TYPES[col] == DICTIONARY){
+                dictionaries.set(col, new HashMap<String, Integer>());
+                dictionaryValues.set(col, new ArrayList<String>());
+            }
+        }
+
+        this.out = new BufferedOutputStream(out, AltaOutputBuffer.DEFAULT_CAPACITY);
+        write(MAGIC);
+    }
+
+    public AltaColumnarWriter(OutputStream out, String[] headers, int rowGroup, int compressionLevel)
+            throws IOException{
+        this(out, headers, AltaMessage.allColumns(), rowGroup, compressionLevel);
+    }
+
+    public AltaColumnarWriter(OutputStream out, String[] headers, int[] columns) throws IOException{
+        this(out, headers, columns, DEFAULT_ROW_GROUP, Deflater.BEST_SPEED);
+    }
+
+    public AltaColumnarWriter(OutputStream out, String[] headers) throws IOException{
+        this(out, headers, AltaMessage.allColumns());
+    }
+    //fixed bytes per row in a column chunk
+    private static int rowBytes(byte type){
+        switch (type){
+            case INT8: return 1;
+            case INT32: return 4;
+            case FLOAT64: return 8;
+            case INT64: return 8;
+            case DICTIONARY: return 2;
+            case UINT16_LIST: return 2 * AltaMessage.MAX_DATA_WORDS;
+            default: throw new IllegalArgumentException("Unknown column type " + type);
+        }
+    }
+
+    public void write(AltaMessage message) throws IOException{
+
+        for (int col : columns) writeColumn(col, message);
+
+        if (++rows == rowGroup) flushRowGroup();
+    }
+
+    private void writeColumn(int col, AltaMessage message){
+
+        boolean rtrt = message.isRTtoRT();
+        switch (col){
+            case AltaMessage.TIMESTAMP: chunks[col].putLong(message.getEpochNanos()); break;
+            case AltaMessage.MESSAGE_TYPE: putDictionary(col, message.getMessageType()); break;
+            case AltaMessage.MESSAGE_BUS: putDictionary(col, message.isBusA() ? "A" : "B"); break;
+            case AltaMessage.RT_ADDRESS_0: chunks[col].put((byte)message.getRTAddress(0)); break;
+            case AltaMessage.RT_ADDRESS_1: chunks[col].put((byte)(rtrt ? message.getRTAddress(1) : -1)); break;
+            case AltaMessage.RT_SUB_ADDRESS_0: chunks[col].put((byte)message.getRTSubAddress(0)); break;
+            case AltaMessage.RT_SUB_ADDRESS_1: chunks[col].put((byte)(rtrt ? message.getRTSubAddress(1) : -1)); break;
+            case AltaMessage.MESSAGE_FLOW_0: putDictionary(col, message.isTransmit(0) ? "TRANSMIT" : "RECEIVE"); break;
+            case AltaMessage.MESSAGE_FLOW_1:
+                putDictionary(col, rtrt ? (message.isTransmit(1) ? "TRANSMIT" : "RECEIVE") : "UNUSED");
+                break;
+            case AltaMessage.MESSAGE_GAP: chunks[col].putDouble(message.getMessageGap()); break;
+            case AltaMessage.MESSAGE_VALIDITY_0:
+                putDictionary(col, message.failedRTTest(0) ? "FAILED RT TEST" : "VALID");
+                break;
+            case AltaMessage.MESSAGE_VALIDITY_1:
+                putDictionary(col, rtrt && message.failedRTTest(1) ? "FAILED RT TEST" : "VALID");
+                break;
+            case AltaMessage.MESSAGE_ERRORS: putDictionary(col, message.getMessageErrors()); break;
+            case AltaMessage.MODE_CODE_DESC:
+                putDictionary(col, message.isModeCode()
+                        ? AltaMessageDecoder.describeModeCode(message.getModeCode()) : "UNUSED");
+                break;
+            case AltaMessage.MODE_CODE_WORD:
+                chunks[col].putInt(message.hasModeCodeWord() ? message.getDataWord(0) & 0xFFFF : -1);
+                break;
+            case AltaMessage.DATA_WORD_COUNT: chunks[col].put((byte)message.getDataWordCount()); break;
+            case AltaMessage.DATA_WORDS:
+                ByteBuffer words = chunks[col];
+                for (int word=0;word < AltaMessage.MAX_DATA_WORDS;word++){
+                    words.putShort(word < message.getDataWordsUsed() ? (short)message.getDataWord(word) : 0);
+                }
+                break;
+        }
+    }
+
+    //values are stored once per row group and referenced by index
+    private void putDictionary(int col, String value){
+        Map<String, Integer> dictionary = dictionaries.get(col);
+        Integer index = dictionary.get(value);
+        if (index == null){
+            index = dictionary.size();
+            if (index == Short.MAX_VALUE) throw new IllegalStateException(
+                    "Too many distinct values in column " + headers[col]);
+            dictionary.put(value, index);
+            dictionaryValues.get(col).add(value);
+        }
+        chunks[col].putShort(index.shortValue());
+    }
+
+    private void flushRowGroup() throws IOException{
+
+        if (rows == 0) return;
+        footerData.writeInt(rows);
+
+        for (int col : columns){
+            byte[] raw = encodeChunk(col);
+            byte[] compressed = compress(raw);
+            footerData.writeLong(offset);
+            footerData.writeInt(compressed.length);
+            footerData.writeInt(raw.length);
+            write(compressed);
+
+            chunks[col].clear();
+            if (dictionaries.get(col) != null){
+                dictionaries.get(col).clear();
+                dictionaryValues.get(col).clear();
+            }
+        }
+        rows = 0;
+        rowGroups++;
+    }
+
+    private byte[] encodeChunk(int col){
+
+        ByteBuffer chunk = chunks[col];
+        if (TYPES[col] == DICTIONARY){
+            int count = dictionaryValues.get(col).size();
+            byte[][] values = new byte[count][];
+            int size = 4 + chunk.position();
+            for (int index=0;index < count;index++){
+                values[index] = dictionaryValues.get(col).get(index).getBytes(StandardCharsets.UTF_8);
+                size += 4 + values[index].length;
+            }
+
+            ByteBuffer encoded = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+            encoded.putInt(count);
+            for (byte[] value : values){
+                encoded.putInt(value.length);
+                encoded.put(value);
+            }
+            encoded.put(chunk.array(), 0, chunk.position());
+            return encoded.array();
+        }
+        return Arrays.copyOf(chunk.array(), chunk.position());
+    }
+
+    private byte[] compress(byte[] raw){
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.length / 4 + 64);
+        byte[] block = new byte[1 << 16];
+        while (!deflater.finished()){
+            int length = deflater.deflate(block);
+            compressed.write(block, 0, length);
+        }
+        return compressed.toByteArray();
+    }
+
+    private void write(byte[] bytes) throws IOException{
+        out.write(bytes);
+        offset += bytes.length;
+    }
+
+    @Override
+    public void close() throws IOException{
+        try{
+            flushRowGroup();
+
+            ByteArrayOutputStream trailer = new ByteArrayOutputStream();
+            DataOutputStream trailerData = new DataOutputStream(trailer);
+            trailerData.writeInt(VERSION);
+            trailerData.writeInt(columns.length);
+            for (int col : columns){
+                trailerData.writeUTF(headers[col]);
+                trailerData.writeByte(TYPES[col]);
+            }
+            trailerData.writeInt(rowGroups);
+            footer.writeTo(trailerData);
+            trailerData.writeInt(trailer.size());
+            trailerData.write(MAGIC);
+            write(trailer.toByteArray());
+        } finally {
+            deflater.end();
+            out.close();
+        }
+    }
+}
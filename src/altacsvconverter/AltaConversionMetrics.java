@@ -0,0 +1,160 @@
+package altacsvconverter;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.LongAdder;
+
+//where the time of one conversion went and what it found
+//
+//read is time spent waiting on the capture, decode is tokenizing and parsing the rows and
+//write is formatting and writing the outputs. when ranges are decoded on several threads
+//the stage times are summed over the threads and can add up to more than the wall time
+public class AltaConversionMetrics {
+
+    //message counts by CDP status, in the order of AltaMessage.ERROR_NAMES
+    private final long[] errorCounts = new long[AltaMessage.ERROR_BITS.length];
+    private long noErrorCount;          //messages flagged NO ERROR and not SPURIOUS
+    private long spuriousCount;         //messages flagged SPURIOUS
+
+    private long readNanos;
+    private long decodeNanos;
+    private long writeNanos;
+    private long bytesRead;             //capture bytes read
+    //output bytes written, over all outputs. gzipped outputs are written from their own
+    //threads at the same time, so the count is a LongAdder
+    private final LongAdder bytesWritten = new LongAdder();
+    private long messages;
+    private long malformedRows;         //rows skipped because they couldn't be parsed
+    private long filteredRows;          //rows rejected by a -where filter
+
+    //counts the CDP status of each message, SPURIOUS replaces NO ERROR as in messageErrors
+    void count(AltaMessage[] batch, int count){
+        for (int row=0;row < count;row++){
+            int cdp = batch[row].cdp;
+            if ((cdp & AltaMessage.CDP_SPURIOUS) != 0) spuriousCount++;
+            else if ((cdp & AltaMessage.CDP_NO_ERROR) != 0) noErrorCount++;
+            if ((cdp & AltaMessage.ERROR_MASK) == 0) continue;
+            for (int error=0;error < errorCounts.length;error++){
+                if ((cdp & AltaMessage.ERROR_BITS[error]) != 0) errorCounts[error]++;
+            }
+        }
+        messages += count;
+    }
+
+    void addRead(long nanos, long bytes){
+        readNanos += nanos;
+        bytesRead += bytes;
+    }
+
+    void addDecode(long nanos){
+        decodeNanos += nanos;
+    }
+
+    void addWrite(long nanos){
+        writeNanos += nanos;
+    }
+
+    void addMalformedRows(long rows){
+        malformedRows += rows;
+    }
+
+    void addFilteredRows(long rows){
+        filteredRows += rows;
+    }
+
+    void addBytesWritten(long bytes){
+        bytesWritten.add(bytes);
+    }
+    //adds the counts and times of other, used for totals
+    void add(AltaConversionMetrics other){
+        for (int error=0;error < errorCounts.length;error++) errorCounts[error] += other.errorCounts[error];
+        noErrorCount += other.noErrorCount;
+        spuriousCount += other.spuriousCount;
+        readNanos += other.readNanos;
+        decodeNanos += other.decodeNanos;
+        writeNanos += other.writeNanos;
+        bytesRead += other.bytesRead;
+        bytesWritten.add(other.getBytesWritten());
+        messages += other.messages;
+        malformedRows += other.malformedRows;
+        filteredRows += other.filteredRows;
+    }
+
+    public long getErrorCount(String errorName){
+        if (errorName.equals("NO ERROR")) return noErrorCount;
+        if (errorName.equals("SPURIOUS")) return spuriousCount;
+        for (int error=0;error < errorCounts.length;error++){
+            if (AltaMessage.ERROR_NAMES[error].equals(errorName)) return errorCounts[error];
+        }
+        throw new IllegalArgumentException("No error named " + errorName);
+    }
+
+    public long getReadNanos(){
+        return readNanos;
+    }
+
+    public long getDecodeNanos(){
+        return decodeNanos;
+    }
+
+    public long getWriteNanos(){
+        return writeNanos;
+    }
+
+    public long getBytesRead(){
+        return bytesRead;
+    }
+
+    public long getBytesWritten(){
+        return bytesWritten.sum();
+    }
+
+    public long getMessages(){
+        return messages;
+    }
+
+    public long getMalformedRows(){
+        return malformedRows;
+    }
+
+    public long getFilteredRows(){
+        return filteredRows;
+    }
+    //writes the stages and error counts as the members of a json object
+    void writeJSON(AltaOutputBuffer output) throws IOException{
+        output.writeAscii("\"messages\":");
+        output.writeLong(messages);
+        output.writeAscii(",\"malformedRows\":");
+        output.writeLong(malformedRows);
+        output.writeAscii(",\"filteredRows\":");
+        output.writeLong(filteredRows);
+        output.writeAscii(",\"bytesRead\":");
+        output.writeLong(bytesRead);
+        output.writeAscii(",\"bytesWritten\":");
+        output.writeLong(bytesWritten.sum());
+
+        output.writeAscii(",\"stages\":{");
+        writeStage(output, "read", readNanos, bytesRead);
+        output.write(',');
+        writeStage(output, "decode", decodeNanos, bytesRead);
+        output.write(',');
+        writeStage(output, "write", writeNanos, bytesWritten.sum());
+
+        output.writeAscii("},\"errors\":{\"NO ERROR\":");
+        output.writeLong(noErrorCount);
+        output.writeAscii(",\"SPURIOUS\":");
+        output.writeLong(spuriousCount);
+        for (int error=0;error < errorCounts.length;error++){
+            output.writeAscii(",\"" + AltaMessage.ERROR_NAMES[error] + "\":");
+            output.writeLong(errorCounts[error]);
+        }
+        output.write('}');
+    }
+
+    private void writeStage(AltaOutputBuffer output, String stage, long nanos, long bytes)
+            throws IOException{
+        double seconds = nanos / 1e9;
+        output.writeAscii("\"" + stage + "\":{\"seconds\":" + seconds
+                + ",\"rowsPerSecond\":" + (nanos > 0 ? Math.round(messages / seconds) : 0)
+                + ",\"bytesPerSecond\":" + (nanos > 0 ? Math.round(bytes / seconds) : 0) + "}");
+    }
+}
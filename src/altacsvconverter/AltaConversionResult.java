@@ -0,0 +1,236 @@
+package altacsvconverter;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+//outcome of converting one alta csv, also names its output files
+public class AltaConversionResult implements AltaOutputFiles {
+
+    private final String altaFileName;  //input capture
+    private final String folderName;    //outputs go to folderName/alta1553
+    private String timeStamp;           //time of the first message, names the outputs
+    private String continuedStamp;      //names the outputs appended to, null if there are none
+    private Map<String, Long> continuedLengths = Collections.emptyMap();   //their committed lengths
+    private final List<Path> appendedPaths = new ArrayList<>();    //outputs appended to so far
+    private final List<Long> appendedLengths = new ArrayList<>();  //their lengths before appending
+    private final List<Path> partPaths = new ArrayList<>();    //outputs written so far
+    private final List<Path> outputPaths = new ArrayList<>();  //where commit moves them
+    private long messages;              //number of messages written
+    private long elapsedNanos;          //wall time spent converting
+    private Exception failure;          //cause if the conversion failed
+    private final AltaConversionMetrics metrics = new AltaConversionMetrics();
+    private static final AtomicLong partCounter = new AtomicLong();    //numbers the part files
+
+    //counts the bytes written to an output
+    private class CountingOutputStream extends FilterOutputStream {
+
+        CountingOutputStream(OutputStream out){
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException{
+            out.write(b);
+            metrics.addBytesWritten(1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int count) throws IOException{
+            out.write(bytes, offset, count);
+            metrics.addBytesWritten(count);
+        }
+    }
+
+    public AltaConversionResult(String altaFileName, String folderName){
+        this.altaFileName = altaFileName;
+        this.folderName = folderName;
+    }
+
+    //outputs are named after the first message, to the second and without separators
+    void setStartTime(AltaMessage first){
+        long seconds = first.getNanoOfDay() / AltaTimestamp.NANOS_PER_SECOND;
+        timeStamp = LocalDate.ofEpochDay(first.getEpochDay()) + "T" + twoDigits(seconds / 3600)
+                + twoDigits(seconds / 60 % 60) + twoDigits(seconds % 60);
+    }
+
+    private static String twoDigits(long value){
+        return value < 10 ? "0" + value : Long.toString(value);
+    }
+    //appends to the outputs of an earlier conversion of the same capture, lengths holds
+    //their committed length per extension (see getOutputLengths)
+    void continueOutputs(String stamp, Map<String, Long> lengths){
+        continuedStamp = stamp;
+        continuedLengths = new HashMap<>(lengths);
+    }
+    //name shared by the outputs of this capture (the part after "alta1553_")
+    public String getOutputStamp(){
+        return continuedStamp != null ? continuedStamp : timeStamp;
+    }
+
+    private Path outputPath(String stamp, String extension){
+        return Paths.get(folderName + "/alta1553/alta1553_" + stamp + extension);
+    }
+    //output files using predefined header with timestamp of the first message
+    @Override
+    public OutputStream create(String extension) throws IOException{
+
+        //create output directory if it doesn't exist
+        File outputDir = new File(folderName + "/alta1553");
+        if (!outputDir.exists()) outputDir.mkdir();
+
+        Path filePath = outputPath(timeStamp, extension);
+        //rows appended to a capture never replace its earlier outputs
+        for (int segment=1;continuedStamp != null && Files.exists(filePath);segment++){
+            filePath = outputPath(timeStamp + "_" + segment, extension);
+        }
+        System.out.println("Writing " + filePath + "...");
+
+        //a part file of its own per call, so concurrent conversions of one capture (or of
+        //captures with the same name) never write to the same one. created with the usual
+        //permissions, the output keeps them when it's moved into place
+        Path partPath;
+        while (true){
+            partPath = Paths.get(folderName + "/alta1553/." + new File(altaFileName).getName()
+                    + extension + "." + partCounter.incrementAndGet() + ".part");
+            try{
+                Files.createFile(partPath);
+                break;
+            } catch (FileAlreadyExistsException taken){
+                //left by another process, try the next number
+            }
+        }
+        partPaths.add(partPath);
+        outputPaths.add(filePath);
+        return new CountingOutputStream(new FileOutputStream(partPath.toFile()));
+    }
+
+    @Override
+    public OutputStream append(String extension) throws IOException{
+
+        if (continuedStamp == null) return null;
+        Path filePath = outputPath(continuedStamp, extension);
+        Long length = continuedLengths.get(extension);
+        if (length == null || !Files.exists(filePath) || Files.size(filePath) < length) return null;
+        System.out.println("Appending to " + filePath + "...");
+
+        //anything past the committed length was left by a run that didn't finish
+        FileChannel channel = FileChannel.open(filePath, StandardOpenOption.WRITE);
+        try{
+            channel.truncate(length);
+            channel.position(length);
+        } catch (IOException failure){
+            channel.close();
+            throw failure;
+        }
+        appendedPaths.add(filePath);
+        appendedLengths.add(length);
+        return new CountingOutputStream(Channels.newOutputStream(channel));
+    }
+
+    void setMessages(long messages){
+        this.messages = messages;
+    }
+
+    void setElapsedNanos(long elapsedNanos){
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    void setFailure(Exception failure){
+        this.failure = failure;
+    }
+    //moves the finished outputs into place, replacing any earlier output of the same name.
+    //the move is atomic where the file system allows it, so of two conversions committing
+    //the same output one complete file wins
+    public void commit() throws IOException{
+        for (int output=0;output < partPaths.size();output++){
+            try{
+                Files.move(partPaths.get(output), outputPaths.get(output), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException unsupported){
+                Files.move(partPaths.get(output), outputPaths.get(output), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        partPaths.clear();
+        outputPaths.addAll(appendedPaths);
+        appendedPaths.clear();
+        appendedLengths.clear();
+    }
+    //removes partially written outputs
+    public void discard(){
+        for (Path partPath : partPaths){
+            try{
+                Files.deleteIfExists(partPath);
+            } catch (IOException message){
+                message.printStackTrace();
+            }
+        }
+        //appended outputs go back to their committed length
+        for (int output=0;output < appendedPaths.size();output++){
+            try (FileChannel channel = FileChannel.open(appendedPaths.get(output), StandardOpenOption.WRITE)){
+                channel.truncate(appendedLengths.get(output));
+            } catch (IOException message){
+                message.printStackTrace();
+            }
+        }
+        partPaths.clear();
+        outputPaths.clear();
+        appendedPaths.clear();
+        appendedLengths.clear();
+    }
+
+    public String getAltaFileName(){
+        return altaFileName;
+    }
+
+    public List<Path> getOutputPaths(){
+        return Collections.unmodifiableList(outputPaths);
+    }
+    //current length per extension of the committed outputs named by getOutputStamp
+    public Map<String, Long> getOutputLengths() throws IOException{
+        Map<String, Long> lengths = new HashMap<>();
+        String prefix = "alta1553_" + getOutputStamp();
+        for (Path outputPath : outputPaths){
+            String name = outputPath.getFileName().toString();
+            if (name.startsWith(prefix + ".")) lengths.put(name.substring(prefix.length()), Files.size(outputPath));
+        }
+        return lengths;
+    }
+
+    public long getMessages(){
+        return messages;
+    }
+
+    public long getElapsedNanos(){
+        return elapsedNanos;
+    }
+
+    public AltaConversionMetrics getMetrics(){
+        return metrics;
+    }
+
+    public Exception getFailure(){
+        return failure;
+    }
+
+    public boolean failed(){
+        return failure != null;
+    }
+}
@@ -0,0 +1,332 @@
+package altacsvconverter;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+
+//keeps a warmed up JVM converting captures sent to it over http (-serve <port>)
+//
+//  POST /convert?format=csv    the body is a capture (Content-Encoding: gzip if it's
+//                              gzipped), the response its output in format: json
+//                              (default), csv, columnar or stats
+//  POST /files?path=<capture>&formats=json,csv
+//                              converts a capture under the server's root folder into
+//                              alta1553 next to it as the command line does (any
+//                              outputs, gzip=true compresses the text ones), the
+//                              response is a json summary. path is relative to the root
+//                              or absolute, anything resolving outside the root is refused
+//both take where=<terms> and columns=<names> (see AltaMessageFilter),
+//skipMalformed=true|false and numericWords=true (json data words as numbers, refused
+//without a json output). only the loopback address is bound and there's no
+//authentication, so requests carrying an Origin header are refused: browsers add one to
+//the posts of web pages, tools like curl don't. jobs run on a fixed pool of threads
+public class AltaConversionServer {
+
+    private static final int GZIP_BUFFER = 1 << 16;
+
+    private final HttpServer server;
+    private final ExecutorService jobs;
+    private final int chunkSize;
+    private final boolean skipMalformed;        //unless a request says otherwise
+    private final AltaMetrics metrics;
+    private final Path root;                    //real path of the folder /files converts in
+    private final Set<Path> converting = ConcurrentHashMap.newKeySet();    //captures of running /files jobs
+
+    //port 0 picks a free port, see getPort. /files only converts captures under root
+    public AltaConversionServer(int port, int threads, int chunkSize, boolean skipMalformed,
+            AltaMetrics metrics, Path root) throws IOException{
+
+        this.root = root.toRealPath();
+        this.chunkSize = chunkSize;
+        this.skipMalformed = skipMalformed;
+        this.metrics = metrics;
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/convert", new HttpHandler(){
+            @Override public void handle(HttpExchange exchange) throws IOException
+            { convert(exchange); }
+        });
+        server.createContext("/files", new HttpHandler(){
+            @Override public void handle(HttpExchange exchange) throws IOException
+            { convertFile(exchange); }
+        });
+        jobs = Executors.newFixedThreadPool(Math.max(1, threads));
+        server.setExecutor(jobs);
+    }
+
+    public void start(){
+        server.start();
+    }
+    //waits up to delaySeconds for running jobs
+    public void stop(int delaySeconds){
+        server.stop(delaySeconds);
+        jobs.shutdown();
+    }
+
+    public int getPort(){
+        return server.getAddress().getPort();
+    }
+
+    private void convert(HttpExchange exchange) throws IOException{
+
+        Map<String, String> query;
+        AltaConverter converter;
+        AltaOutputFormat format;
+        boolean numericWords;
+        if (crossOrigin(exchange)) return;
+        try{
+            requirePost(exchange);
+            query = parseQuery(exchange);
+            converter = converter(query);
+            format = AltaOutputFormat.fromFlag("-" + value(query, "format", "json"));
+            if (format == null || format == AltaOutputFormat.STORE) throw new IllegalArgumentException(
+                    "Unknown format '" + query.get("format") + "', expected json, csv, columnar or stats");
+            numericWords = numericWords(query);
+            if (numericWords && format != AltaOutputFormat.JSON) throw new IllegalArgumentException(
+                    "numericWords only applies to json output");
+        } catch (IllegalArgumentException badRequest){
+            respond(exchange, 400, badRequest.getMessage());
+            return;
+        }
+
+        String name = "POST /convert";
+        String encoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+        AltaConversionMetrics conversion = null;
+        ResponseStream response = new ResponseStream(exchange, contentType(format));
+        try (InputStream capture = "gzip".equalsIgnoreCase(encoding)
+                ? new GZIPInputStream(exchange.getRequestBody(), GZIP_BUFFER) : exchange.getRequestBody()){
+            conversion = converter.convert(capture, format, numericWords, response);
+        } catch (IOException | RuntimeException failure){
+            metrics.record(name, new AltaConversionMetrics(), failure);
+            //once the output has started the status can't change, the connection is
+            //dropped instead so the client sees a truncated response
+            if (response.started) throw failure;
+            respond(exchange, 500, "Converting failed: " + failure);
+            return;
+        }
+        metrics.record(name, conversion, null);
+        response.close();
+    }
+
+    private void convertFile(HttpExchange exchange) throws IOException{
+
+        Path capture;
+        AltaConverter converter;
+        List<AltaSinkFactory> formats = new ArrayList<>();
+        if (crossOrigin(exchange)) return;
+        try{
+            requirePost(exchange);
+            Map<String, String> query = parseQuery(exchange);
+            if (!query.containsKey("path")) throw new IllegalArgumentException("Expected path=<capture>");
+            Path requested = root.resolve(query.get("path")).normalize();
+            //links are followed before checking, so none of them lead out of the root
+            try{
+                if (!Files.isRegularFile(requested)) throw new IOException("not a file");
+                capture = requested.toRealPath();
+            } catch (IOException missing){
+                throw new IllegalArgumentException("No capture at '" + requested + "'");
+            }
+            if (!capture.startsWith(root)){
+                respond(exchange, 403, "'" + requested + "' is outside " + root);
+                return;
+            }
+
+            AltaMessageFilter filter = filter(query);
+            boolean gzip = Boolean.parseBoolean(value(query, "gzip", "false"));
+            boolean numericWords = numericWords(query);
+            boolean json = false;
+            for (String name : value(query, "formats", "json").split(",")){
+                AltaOutputFormat format = AltaOutputFormat.fromFlag("-" + name.trim());
+                if (format == null) throw new IllegalArgumentException("Unknown format '" + name
+                        + "', expected json, csv, columnar, store or stats");
+                //the store keeps every field whatever columns says
+                if (format == AltaOutputFormat.STORE && filter != null) filter.keepDataWords();
+                json |= format == AltaOutputFormat.JSON;
+                formats.add(filter == null && !gzip && !numericWords ? format
+                        : format.configure(filter, gzip, numericWords));
+            }
+            if (numericWords && !json) throw new IllegalArgumentException("numericWords only applies to json output");
+            converter = new AltaConverter(filter, skipMalformed(query), chunkSize);
+        } catch (IllegalArgumentException badRequest){
+            respond(exchange, 400, badRequest.getMessage());
+            return;
+        }
+
+        //two conversions of one capture would replace each other's outputs
+        if (!converting.add(capture)){
+            respond(exchange, 409, "'" + capture + "' is already being converted");
+            return;
+        }
+        try{
+            AltaConversionResult result;
+            try{
+                result = converter.convert(capture, formats);
+            } catch (IOException | RuntimeException failure){
+                metrics.record(capture.toString(), new AltaConversionMetrics(), failure);
+                respond(exchange, 500, "Converting '" + capture + "' failed: " + failure);
+                return;
+            }
+            metrics.record(result);
+
+            AltaOutputBuffer summary = new AltaOutputBuffer(4096);
+            summary.writeAscii("{\"file\":\"");
+            summary.writeJSONEscaped(capture.toString());
+            summary.writeAscii("\",\"wallSeconds\":" + result.getElapsedNanos() / 1e9 + ",\"outputs\":[");
+            List<Path> outputs = result.getOutputPaths();
+            for (int output=0;output < outputs.size();output++){
+                summary.writeAscii(output == 0 ? "\"" : ",\"");
+                summary.writeJSONEscaped(outputs.get(output).toString());
+                summary.write('"');
+            }
+            summary.writeAscii("],");
+            result.getMetrics().writeJSON(summary);
+            summary.writeAscii("}\n");
+            respond(exchange, 200, "application/json", summary.toString());
+        } finally {
+            converting.remove(capture);
+        }
+    }
+
+    //web pages can post to the loopback address too, their requests carry an Origin
+    private static boolean crossOrigin(HttpExchange exchange) throws IOException{
+        String origin = exchange.getRequestHeaders().getFirst("Origin");
+        if (origin == null) return false;
+        respond(exchange, 403, "Requests from web pages (Origin: " + origin + ") aren't accepted");
+        return true;
+    }
+
+    private static void requirePost(HttpExchange exchange){
+        if (!exchange.getRequestMethod().equals("POST")) throw new IllegalArgumentException(
+                "Expected POST, not " + exchange.getRequestMethod());
+    }
+    //converter for the filter and settings of a request, converters are only settings
+    //so one per request costs nothing
+    private AltaConverter converter(Map<String, String> query){
+        return new AltaConverter(filter(query), skipMalformed(query), chunkSize);
+    }
+    //null if the request doesn't filter
+    private static AltaMessageFilter filter(Map<String, String> query){
+        if (!query.containsKey("where") && !query.containsKey("columns")) return null;
+        AltaMessageFilter filter = new AltaMessageFilter();
+        if (query.containsKey("where")) filter.where(query.get("where"));
+        if (query.containsKey("columns")) filter.columns(query.get("columns"));
+        return filter;
+    }
+
+    private boolean skipMalformed(Map<String, String> query){
+        return Boolean.parseBoolean(value(query, "skipMalformed", Boolean.toString(skipMalformed)));
+    }
+
+    private static boolean numericWords(Map<String, String> query){
+        return Boolean.parseBoolean(value(query, "numericWords", "false"));
+    }
+
+    private static String value(Map<String, String> query, String key, String otherwise){
+        String value = query.get(key);
+        return value == null ? otherwise : value;
+    }
+    //name=value pairs of the url, a name without a value maps to "true"
+    private static Map<String, String> parseQuery(HttpExchange exchange){
+        Map<String, String> query = new HashMap<>();
+        String raw = exchange.getRequestURI().getRawQuery();
+        if (raw == null) return query;
+        try{
+            for (String pair : raw.split("&")){
+                if (pair.isEmpty()) continue;
+                int equals = pair.indexOf('=');
+                String name = URLDecoder.decode(equals < 0 ? pair : pair.substring(0, equals), "UTF-8");
+                query.put(name, equals < 0 ? "true" : URLDecoder.decode(pair.substring(equals+1), "UTF-8"));
+            }
+        } catch (UnsupportedEncodingException missing){
+            throw new IllegalStateException(missing);
+        }
+        return query;
+    }
+
+    private static String contentType(AltaOutputFormat format){
+        switch (format){
+            case CSV: return "text/csv";
+            case COLUMNAR: return "application/octet-stream";
+            case STATS: return "application/json";
+            default: return "application/x-ndjson";
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String message) throws IOException{
+        respond(exchange, status, "text/plain; charset=utf-8", message + "\n");
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, String body)
+            throws IOException{
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()){
+            out.write(bytes);
+        }
+    }
+
+    //response body that only sends the 200 status once the first bytes are written, so a
+    //conversion failing before that can still answer with an error
+    private static class ResponseStream extends OutputStream {
+
+        private final HttpExchange exchange;
+        private final String contentType;
+        private OutputStream body;
+        boolean started = false;
+
+        ResponseStream(HttpExchange exchange, String contentType){
+            this.exchange = exchange;
+            this.contentType = contentType;
+        }
+
+        private OutputStream body() throws IOException{
+            if (!started){
+                started = true;
+                exchange.getResponseHeaders().set("Content-Type", contentType);
+                exchange.sendResponseHeaders(200, 0);
+                body = exchange.getResponseBody();
+            }
+            return body;
+        }
+
+        @Override
+        public void write(int b) throws IOException{
+            body().write(b);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int count) throws IOException{
+            if (count > 0) body().write(bytes, offset, count);
+        }
+        //the output is flushed when a sink closes, before anything is written there's
+        //nothing to send yet
+        @Override
+        public void flush() throws IOException{
+            if (started) body.flush();
+        }
+        //ends the response, empty if nothing was written
+        @Override
+        public void close() throws IOException{
+            body().close();
+        }
+    }
+}
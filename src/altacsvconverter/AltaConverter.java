@@ -0,0 +1,144 @@
+package altacsvconverter;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+//entry point for embedding the converter: converts captures read from streams or files
+//to sinks, output streams or an iterator of messages
+//
+//a converter only holds its settings, every call decodes with state of its own, so one
+//instance can be shared by any number of threads (the filter mustn't change after the
+//converter is built)
+public class AltaConverter {
+
+    private final AltaMessageFilter filter;     //rows to keep, null for all of them
+    private final boolean skipMalformed;        //count and skip rows that can't be parsed
+    private final int chunkSize;                //messages decoded before they're written
+
+    public AltaConverter(){
+        this(null, false, AltaStreamConverter.DEFAULT_CHUNK_SIZE);
+    }
+
+    public AltaConverter(AltaMessageFilter filter, boolean skipMalformed, int chunkSize){
+        this.filter = filter;
+        this.skipMalformed = skipMalformed;
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+    //writes the capture in format to out, which is left open. formats writing more than
+    //one file (-store) can't be written to a stream and fail with IOException
+    public AltaConversionMetrics convert(InputStream capture, AltaOutputFormat format, OutputStream out)
+            throws IOException{
+        return convert(capture, format, false, out);
+    }
+    //numericWords writes json data words as an array of numbers, other formats throw
+    //IllegalArgumentException for it
+    public AltaConversionMetrics convert(InputStream capture, AltaOutputFormat format, boolean numericWords,
+            OutputStream out) throws IOException{
+        if (numericWords && format != AltaOutputFormat.JSON) throw new IllegalArgumentException(
+                "numericWords only applies to json output, not " + format);
+        AltaConversionMetrics metrics = new AltaConversionMetrics();
+        AltaSinkFactory factory = filter == null && !numericWords ? format
+                : format.configure(filter, false, numericWords);
+        streamConverter().convert(Channels.newChannel(capture), factory.createSink(),
+                new SingleOutput(out, metrics), metrics);
+        return metrics;
+    }
+    //passes the messages of the capture to sink, which opens its outputs from files
+    public AltaConversionMetrics convert(InputStream capture, AltaOutputSink sink, AltaOutputFiles files)
+            throws IOException{
+        AltaConversionMetrics metrics = new AltaConversionMetrics();
+        streamConverter().convert(Channels.newChannel(capture), sink, files, metrics);
+        return metrics;
+    }
+    //the capture may be gzipped (.csv.gz)
+    public AltaConversionMetrics convert(Path capture, AltaOutputSink sink, AltaOutputFiles files)
+            throws IOException{
+        AltaConversionMetrics metrics = new AltaConversionMetrics();
+        try (ReadableByteChannel channel = AltaStreamConverter.open(capture.toString(), 0)){
+            streamConverter().convert(channel, sink, files, metrics);
+        }
+        return metrics;
+    }
+    //converts the capture into alta1553 next to it the way the command line does, one
+    //output per format
+    public AltaConversionResult convert(Path capture, List<? extends AltaSinkFactory> formats)
+            throws IOException{
+        Path folder = capture.toAbsolutePath().getParent();
+        return streamConverter(formats).convert(capture.toString(), folder.toString());
+    }
+    //the messages of the capture one at a time, close the iterator to release capture
+    public AltaMessageIterator messages(InputStream capture) throws IOException{
+        return new AltaMessageIterator(tokenizer(Channels.newChannel(capture)), capture);
+    }
+    //the capture may be gzipped (.csv.gz)
+    public AltaMessageIterator messages(Path capture) throws IOException{
+        ReadableByteChannel channel = AltaStreamConverter.open(capture.toString(), 0);
+        try{
+            return new AltaMessageIterator(tokenizer(channel), channel);
+        } catch (IOException | RuntimeException failure){
+            channel.close();
+            throw failure;
+        }
+    }
+    //the iterator hands out whole messages, so only the filter's rows apply and data words
+    //are parsed whatever its columns
+    private AltaCSVTokenizer tokenizer(ReadableByteChannel channel) throws IOException{
+        AltaCSVTokenizer tokenizer = new AltaCSVTokenizer(channel, AltaCSVTokenizer.DEFAULT_BUFFER_SIZE);
+        tokenizer.setSkipMalformed(skipMalformed);
+        tokenizer.setFilter(filter == null ? null : filter.withDataWords());
+        //the csv header
+        tokenizer.skipLine();
+        return tokenizer;
+    }
+    //stream converters hold the chunk being decoded, so every call gets its own
+    private AltaStreamConverter streamConverter(List<? extends AltaSinkFactory> formats){
+        AltaStreamConverter converter = new AltaStreamConverter(formats, chunkSize);
+        converter.setSkipMalformed(skipMalformed);
+        converter.setFilter(filter);
+        return converter;
+    }
+    //for a sink of the caller's, the converter has no outputs of its own
+    private AltaStreamConverter streamConverter(){
+        return streamConverter(Collections.<AltaSinkFactory>emptyList());
+    }
+
+    //hands out one stream for the single output of a sink, closing it only flushes
+    private static class SingleOutput implements AltaOutputFiles {
+
+        private final OutputStream out;
+        private final AltaConversionMetrics metrics;
+        private boolean created = false;
+
+        SingleOutput(OutputStream out, AltaConversionMetrics metrics){
+            this.out = out;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public OutputStream create(String extension) throws IOException{
+            if (created) throw new IOException("Only one output can be written to a stream, "
+                    + extension + " is another one");
+            created = true;
+            return new FilterOutputStream(out){
+                @Override public void write(int b) throws IOException
+                { out.write(b); metrics.addBytesWritten(1); }
+                @Override public void write(byte[] bytes, int offset, int count) throws IOException
+                { out.write(bytes, offset, count); metrics.addBytesWritten(count); }
+                @Override public void close() throws IOException
+                { out.flush(); }
+            };
+        }
+        //nothing to append to
+        @Override
+        public OutputStream append(String extension){
+            return null;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package altacsvconverter;
+
+import java.io.IOException;
+
+//sink whose output for a batch can be encoded on any thread and written later in order
+public interface AltaEncodedSink extends AltaOutputSink {
+
+    //must be thread safe, may be called before open
+    AltaOutputBuffer encode(AltaMessage[] batch, int count) throws IOException;
+
+    //writes a buffer returned by encode
+    void writeEncoded(AltaOutputBuffer encoded) throws IOException;
+}
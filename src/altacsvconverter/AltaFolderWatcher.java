@@ -0,0 +1,259 @@
+package altacsvconverter;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+//converts captures in a folder as they arrive and as they grow (-watch)
+//
+//a changed capture is converted once it has stopped changing for SETTLE_MILLIS (or has
+//kept changing for MAX_WAIT_MILLIS), so one still being written is picked up in a few
+//large increments rather than one per write. only complete lines are converted, rows
+//appended later are converted on their own and added to the outputs of the capture.
+//gzipped captures (.csv.gz) can't be read part way, they're converted whole whenever they
+//change (a capture still being written fails and is tried again once it changes).
+//progress is kept in an AltaManifest so a restart skips what was already converted
+public class AltaFolderWatcher {
+
+    //longest wait between full scans, some file systems (network shares) don't report changes
+    private static final long SCAN_MILLIS = 5000;
+    //how long a changed capture has to stay the same size and age before it's converted
+    private static final long SETTLE_MILLIS = 2000;
+    //a capture that never stops changing is converted this often all the same
+    private static final long MAX_WAIT_MILLIS = 60000;
+    //how often waiting captures are checked
+    private static final long CHECK_MILLIS = 250;
+    //bytes hashed to tell a replaced capture from one that was appended to
+    private static final int FINGERPRINT_BYTES = 64 * 1024;
+
+    private final AltaStreamConverter converter;
+    private final String folderName;
+    private final AltaManifest manifest;
+    private final Map<String, String> failed = new HashMap<>();    //size:modified a capture failed at
+    private final Map<String, Pending> pending = new TreeMap<>();  //changed captures waiting to settle
+    private final long started = System.nanoTime();
+    private AltaMetrics metrics;        //collects every result, null if not wanted
+    private Path summaryPath;           //rewritten after every conversion, null if not wanted
+    private final List<AltaConversionResult> results = new ArrayList<>();  //every conversion, in order
+
+    //a changed capture waiting to settle
+    private static class Pending {
+
+        final long queuedMillis;        //when the change was first seen
+        String state;                   //size:modified when last checked, null before
+        long changedMillis;             //when state was last seen changing
+
+        Pending(long queuedMillis){
+            this.queuedMillis = queuedMillis;
+        }
+    }
+
+    public AltaFolderWatcher(List<? extends AltaSinkFactory> sinks, int chunkSize, String folderName)
+            throws IOException{
+        this.converter = new AltaStreamConverter(sinks, chunkSize);
+        this.folderName = folderName;
+
+        //a manifest kept for other outputs is ignored, the new ones start from scratch
+        StringBuilder outputs = new StringBuilder();
+        for (AltaSinkFactory sink : sinks) outputs.append(outputs.length() == 0 ? "" : " ").append(sink);
+        Path outputDir = Paths.get(folderName, "alta1553");
+        Files.createDirectories(outputDir);
+        manifest = new AltaManifest(outputDir.resolve(AltaManifest.FILE_NAME), outputs.toString());
+    }
+    public void setSkipMalformed(boolean skipMalformed){
+        converter.setSkipMalformed(skipMalformed);
+    }
+    //the manifest only knows the filter through the sinks, see AltaOutputFormat.configure
+    public void setFilter(AltaMessageFilter filter){
+        converter.setFilter(filter);
+    }
+    //metrics collects every conversion, summaryPath (if not null) gets the totals after each
+    public void setMetrics(AltaMetrics metrics, Path summaryPath){
+        this.metrics = metrics;
+        this.summaryPath = summaryPath;
+    }
+    //converts what changed since the manifest was saved, then keeps converting as captures
+    //change until the thread is interrupted
+    public void watch() throws IOException, InterruptedException{
+
+        Path folder = Paths.get(folderName);
+        try (WatchService service = folder.getFileSystem().newWatchService()){
+            folder.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            System.out.println("Watching " + folder + " for captures...");
+            scan();
+            long scanned = System.currentTimeMillis();
+
+            while (true){
+                WatchKey key = service.poll(pending.isEmpty() ? SCAN_MILLIS : CHECK_MILLIS, TimeUnit.MILLISECONDS);
+                if (key != null){
+                    //a capture being written raises many events, they only queue it
+                    boolean overflow = false;
+                    for (WatchEvent<?> event : key.pollEvents()){
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) overflow = true;
+                        else if (AltaStreamConverter.isCapture(event.context().toString())){
+                            queue(event.context().toString());
+                        }
+                    }
+                    if (!key.reset()) throw new IOException("Folder '" + folderName + "' is no longer accessible");
+                    if (overflow) scan();
+                }
+                if (System.currentTimeMillis() - scanned >= SCAN_MILLIS){
+                    scan();
+                    scanned = System.currentTimeMillis();
+                }
+                convertSettled();
+            }
+        }
+    }
+    //queues every capture in the folder to be checked against the manifest
+    private void scan(){
+        String[] names = new File(folderName).list(new FilenameFilter(){
+            @Override public boolean accept(File dir, String name)
+            { return AltaStreamConverter.isCapture(name); } });
+        if (names == null) return;
+        for (String name : names) queue(name);
+    }
+
+    private void queue(String name){
+        if (!pending.containsKey(name)) pending.put(name, new Pending(System.currentTimeMillis()));
+    }
+    //converts the queued captures that stopped changing, in name order
+    private void convertSettled(){
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<String, Pending>> waiting = pending.entrySet().iterator();
+        while (waiting.hasNext()){
+            Map.Entry<String, Pending> next = waiting.next();
+            String name = next.getKey();
+            Pending capture = next.getValue();
+            File file = new File(folderName, name);
+            String state = file.length() + ":" + file.lastModified();
+            if (!state.equals(capture.state)){
+                capture.state = state;
+                capture.changedMillis = now;
+            }
+            if (now - capture.changedMillis < SETTLE_MILLIS && now - capture.queuedMillis < MAX_WAIT_MILLIS) continue;
+            waiting.remove();
+            update(name);
+        }
+    }
+    //converts whatever the capture gained since it was last converted
+    private void update(String name){
+
+        File file = new File(folderName, name);
+        if (!file.isFile()) return;
+        long size = file.length();
+        long modified = file.lastModified();
+
+        AltaManifest.Entry entry = manifest.get(name);
+        if (entry != null && entry.size == size && entry.modified == modified) return;
+        //a capture that failed is tried again once it changes
+        String state = size + ":" + modified;
+        if (state.equals(failed.get(name))) return;
+
+        try{
+            Path path = file.toPath();
+            boolean compressed = AltaStreamConverter.isCompressed(name);
+            if (entry != null && (compressed || size < entry.offset
+                    || fingerprint(path, entry.fingerprintLength) != entry.fingerprint)){
+                System.out.println(name + (compressed ? " changed" : " was replaced") + ", converting it again.");
+                entry = null;
+            }
+
+            //a line still being written is left for the next pass
+            long end = compressed ? size : lastLineEnd(path, size);
+            long from = entry == null ? 0 : entry.offset;
+            if (end > from){
+                AltaConversionResult result = new AltaConversionResult(file.getPath(), folderName);
+                if (entry != null && entry.stamp != null) result.continueOutputs(entry.stamp, entry.outputLengths);
+                try{
+                    //the end of a gzipped capture is only known once it's inflated
+                    converter.convertToPart(result, from, compressed ? Long.MAX_VALUE : end);
+                    result.commit();
+                } catch (IOException | RuntimeException failure){
+                    result.setFailure(failure);
+                    throw failure;
+                } finally {
+                    record(result);
+                }
+                System.out.println(AltaBatchConverter.describe(result));
+
+                if (entry == null) entry = new AltaManifest.Entry();
+                entry.offset = end;
+                if (result.getOutputStamp() != null){
+                    entry.stamp = result.getOutputStamp();
+                    entry.outputLengths = result.getOutputLengths();
+                }
+            }
+            if (entry == null) return;
+
+            entry.size = size;
+            entry.modified = modified;
+            entry.fingerprintLength = Math.min(FINGERPRINT_BYTES, entry.offset);
+            entry.fingerprint = fingerprint(path, entry.fingerprintLength);
+            manifest.put(name, entry);
+            manifest.save();
+            failed.remove(name);
+        } catch (IOException | RuntimeException failure){
+            failed.put(name, state);
+            System.out.println("  FAILED " + name + ": " + failure);
+        }
+    }
+
+    //every increment of a capture gets its own entry in the summary
+    private void record(AltaConversionResult result) throws IOException{
+        if (metrics == null) return;
+        metrics.record(result);
+        results.add(result);
+        if (summaryPath != null) metrics.writeSummary(summaryPath, results, System.nanoTime() - started);
+    }
+    //offset just past the last newline before size, 0 if there is none
+    private static long lastLineEnd(Path path, long size) throws IOException{
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+            ByteBuffer buffer = ByteBuffer.allocate(FINGERPRINT_BYTES);
+            long end = size;
+            while (end > 0){
+                long start = Math.max(0, end - buffer.capacity());
+                buffer.clear();
+                buffer.limit((int)(end - start));
+                while (buffer.hasRemaining()){
+                    if (channel.read(buffer, start + buffer.position()) < 0) break;
+                }
+                for (int index=buffer.position()-1;index >= 0;index--){
+                    if (buffer.get(index) == '\n') return start + index + 1;
+                }
+                end = start;
+            }
+            return 0;
+        }
+    }
+    //CRC32 of the first length bytes
+    private static long fingerprint(Path path, long length) throws IOException{
+        CRC32 crc = new CRC32();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+            ByteBuffer buffer = ByteBuffer.allocate((int)length);
+            while (buffer.hasRemaining()){
+                if (channel.read(buffer, buffer.position()) < 0) break;
+            }
+            crc.update(buffer.array(), 0, buffer.position());
+        }
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,92 @@
+package altacsvconverter;
+
+//log-linear histogram of non negative values in constant memory, laid out as in
+//HdrHistogram: values below SUB_BUCKETS are counted exactly, larger ones in HALF buckets
+//per power of two, so a value is known to within 1/HALF of itself
+//(not thread safe)
+public class AltaHistogram {
+
+    private static final int SUB_BITS = 7;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int HALF = SUB_BUCKETS / 2;
+    private static final int BUCKETS = SUB_BUCKETS + (63 - SUB_BITS) * HALF;
+
+    private final long[] counts = new long[BUCKETS];
+    private long count = 0;
+    private long min = Long.MAX_VALUE;
+    private long max = 0;
+    private double sum = 0;
+
+    //negative values are counted as 0
+    public void record(long value){
+        if (value < 0) value = 0;
+        counts[index(value)]++;
+        count++;
+        sum += value;
+        if (value < min) min = value;
+        if (value > max) max = value;
+    }
+
+    public void add(AltaHistogram other){
+        for (int index=0;index < BUCKETS;index++) counts[index] += other.counts[index];
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    private static int index(long value){
+        if (value < SUB_BUCKETS) return (int)value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BITS - 1);
+        return SUB_BUCKETS + (shift - 1) * HALF + (int)(value >>> shift) - HALF;
+    }
+    //smallest value counted in the bucket
+    private static long lowest(int index){
+        if (index < SUB_BUCKETS) return index;
+        int shift = (index - SUB_BUCKETS) / HALF + 1;
+        return (long)((index - SUB_BUCKETS) % HALF + HALF) << shift;
+    }
+    //largest value counted in the bucket
+    private static long highest(int index){
+        if (index < SUB_BUCKETS) return index;
+        int shift = (index - SUB_BUCKETS) / HALF + 1;
+        return lowest(index) + (1L << shift) - 1;
+    }
+
+    public long getCount(){
+        return count;
+    }
+    //0 if nothing was recorded
+    public long getMin(){
+        return count == 0 ? 0 : min;
+    }
+
+    public long getMax(){
+        return max;
+    }
+
+    public double getMean(){
+        return count == 0 ? 0 : sum / count;
+    }
+    //value that percent of the recorded values are at or below, rounded up to the end of
+    //its bucket (never past the largest value recorded), 0 if nothing was recorded
+    public long getValueAtPercentile(double percent){
+        if (count == 0) return 0;
+        long rank = Math.max(1, (long)Math.ceil(percent / 100 * count));
+        long seen = 0;
+        for (int index=0;index < BUCKETS;index++){
+            seen += counts[index];
+            if (seen >= rank) return Math.min(highest(index), max);
+        }
+        return max;
+    }
+    //number of values below limit, leaving out the bucket limit falls in (exact if limit
+    //is below SUB_BUCKETS or starts a bucket)
+    public long getCountBelow(long limit){
+        if (limit <= 0) return 0;
+        long below = 0;
+        int end = index(limit);
+        for (int index=0;index < end;index++) below += counts[index];
+        return below;
+    }
+}
@@ -0,0 +1,104 @@
+package altacsvconverter;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+//what watch mode has converted so far, saved as folder/alta1553/.manifest so a restart
+//only converts what changed. the first line names the outputs the manifest was kept for,
+//then each capture has a tab separated line:
+//  name, size, modified, offset, fingerprint length, fingerprint, output stamp, output lengths
+public class AltaManifest {
+
+    public static final String FILE_NAME = ".manifest";
+
+    private static final String HEADER = "#alta1553 manifest";
+
+    //one capture seen by the watcher
+    public static class Entry {
+        long size;                      //file size when last converted
+        long modified;                  //modification time when last converted
+        long offset;                    //bytes converted so far, always the end of a line
+        long fingerprintLength;         //bytes covered by fingerprint
+        long fingerprint;               //CRC32 of the first bytes, tells a replaced capture from a grown one
+        String stamp;                   //names the outputs, null until a message is found
+        Map<String, Long> outputLengths = new HashMap<>();     //committed length per extension
+    }
+
+    private final Path path;
+    private final String header;        //first line, changes with the selected outputs
+    private final Map<String, Entry> entries = new TreeMap<>();
+
+    //loads path if it was written for the same outputs, otherwise starts empty so every
+    //capture is converted again
+    public AltaManifest(Path path, String outputs) throws IOException{
+        this.path = path;
+        this.header = HEADER + " " + outputs;
+        if (Files.exists(path)) load();
+    }
+
+    private void load() throws IOException{
+        try (BufferedReader in = Files.newBufferedReader(path, StandardCharsets.UTF_8)){
+            if (!header.equals(in.readLine())) return;
+            String line;
+            while ((line = in.readLine()) != null){
+                String[] fields = line.split("\t", -1);
+                if (fields.length != 8) throw new IOException("Malformed manifest line in " + path + ": " + line);
+
+                Entry entry = new Entry();
+                entry.size = Long.parseLong(fields[1]);
+                entry.modified = Long.parseLong(fields[2]);
+                entry.offset = Long.parseLong(fields[3]);
+                entry.fingerprintLength = Long.parseLong(fields[4]);
+                entry.fingerprint = Long.parseLong(fields[5]);
+                entry.stamp = fields[6].isEmpty() ? null : fields[6];
+                for (String output : fields[7].split(",")){
+                    int separator = output.indexOf('=');
+                    if (separator > 0) entry.outputLengths.put(output.substring(0, separator),
+                            Long.parseLong(output.substring(separator + 1)));
+                }
+                entries.put(fields[0], entry);
+            }
+        } catch (NumberFormatException failure){
+            throw new IOException("Malformed manifest " + path, failure);
+        }
+    }
+
+    public Entry get(String name){
+        return entries.get(name);
+    }
+
+    public void put(String name, Entry entry){
+        entries.put(name, entry);
+    }
+    //writes a new manifest and moves it over the old one, so a crash leaves one or the other
+    public void save() throws IOException{
+
+        Path temporary = Paths.get(path + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)){
+            out.write(header);
+            out.newLine();
+            for (Map.Entry<String, Entry> named : entries.entrySet()){
+                Entry entry = named.getValue();
+                StringBuilder outputs = new StringBuilder();
+                for (Map.Entry<String, Long> output : entry.outputLengths.entrySet()){
+                    if (outputs.length() > 0) outputs.append(',');
+                    outputs.append(output.getKey()).append('=').append(output.getValue());
+                }
+                out.write(named.getKey() + "\t" + entry.size + "\t" + entry.modified + "\t" + entry.offset
+                        + "\t" + entry.fingerprintLength + "\t" + entry.fingerprint + "\t"
+                        + (entry.stamp == null ? "" : entry.stamp) + "\t" + outputs);
+                out.newLine();
+            }
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,294 @@
+package altacsvconverter;
+
+//one decoded 1553 message, words are held as ints and fields are read with shifts and masks
+public class AltaMessage {
+
+    public static final int MAX_DATA_WORDS = 32;
+    public static final int MAX_WORD = 0xFFFF;
+
+    //output columns, in the order of toOutputRow and AltaDataFrame.getOutputMatrix
+    public static final String[] HEADERS = {
+        "timestamp" ,
+        "messageType" ,
+        "messageBus" ,
+        "RTAddress_0" ,
+        "RTAddress_1" ,
+        "RTSubAddress_0" ,
+        "RTSubAddress_1" ,
+        "messageFlow_0" ,
+        "messageFlow_1" ,
+        "messageGap" ,
+        "messageValidity_0" ,
+        "messageValidity_1" ,
+        "messageErrors" ,
+        "modeCodeDesc" ,
+        "modeCodeWord" ,
+        "dataWordCount" ,
+        "dataWords"
+    };
+    //indexes into HEADERS, used instead of bare numbers wherever columns are picked
+    static final int TIMESTAMP = 0;
+    static final int MESSAGE_TYPE = 1;
+    static final int MESSAGE_BUS = 2;
+    static final int RT_ADDRESS_0 = 3;
+    static final int RT_ADDRESS_1 = 4;
+    static final int RT_SUB_ADDRESS_0 = 5;
+    static final int RT_SUB_ADDRESS_1 = 6;
+    static final int MESSAGE_FLOW_0 = 7;
+    static final int MESSAGE_FLOW_1 = 8;
+    static final int MESSAGE_GAP = 9;
+    static final int MESSAGE_VALIDITY_0 = 10;
+    static final int MESSAGE_VALIDITY_1 = 11;
+    static final int MESSAGE_ERRORS = 12;
+    static final int MODE_CODE_DESC = 13;
+    static final int MODE_CODE_WORD = 14;
+    static final int DATA_WORD_COUNT = 15;
+    static final int DATA_WORDS = 16;
+
+    //indexes of every output column, in order
+    static int[] allColumns(){
+        int[] columns = new int[HEADERS.length];
+        for (int col=0;col < columns.length;col++) columns[col] = col;
+        return columns;
+    }
+
+    //CDP status word bits (Ref AltaView Users Manual, p. 211)
+    public static final int CDP_BROADCAST = 1 << 31;
+    public static final int CDP_MODE_CODE = 1 << 30;
+    public static final int CDP_RT_RT = 1 << 29;
+    public static final int CDP_RT_BC = 1 << 28;
+    public static final int CDP_BC_RT = 1 << 27;
+    public static final int CDP_SPURIOUS = 1 << 26;
+    public static final int CDP_COMPARE = 1 << 16;
+    public static final int CDP_NO_ERROR = 1 << 15;
+    public static final int CDP_SYNC = 1 << 14;
+    public static final int CDP_BIT_ERROR = 1 << 13;
+    public static final int CDP_PARITY = 1 << 12;
+    public static final int CDP_WORD_COUNT = 1 << 11;
+    public static final int CDP_NO_RESPONSE = 1 << 10;
+    public static final int CDP_WRONG_RT = 1 << 9;
+    public static final int CDP_TWO_BUS = 1 << 8;
+    public static final int CDP_BUS_A = 1 << 6;
+    public static final int CDP_WORD_COUNT_MASK = 0x3F;
+
+    //error bits in the order they are reported in messageErrors
+    static final int[] ERROR_BITS = {
+        CDP_COMPARE, CDP_SYNC, CDP_BIT_ERROR, CDP_PARITY,
+        CDP_WORD_COUNT, CDP_NO_RESPONSE, CDP_WRONG_RT, CDP_TWO_BUS
+    };
+    static final int ERROR_MASK = CDP_COMPARE | CDP_SYNC | CDP_BIT_ERROR | CDP_PARITY
+            | CDP_WORD_COUNT | CDP_NO_RESPONSE | CDP_WRONG_RT | CDP_TWO_BUS;
+    static final String[] ERROR_NAMES = {
+        "COMPARE", "SYNC", "BIT_ERROR", "PARITY",
+        "WORD_COUNT", "NO_RESPONSE", "WRONG_RT", "TWO_BUS"
+    };
+    //message types as named in messageType, with their CDP bits
+    static final String[] TYPE_NAMES = {"MODE_CODE", "RT-RT", "RT-BC", "BC-RT", "BROADCAST"};
+    static final int[] TYPE_BITS = {CDP_MODE_CODE, CDP_RT_RT, CDP_RT_BC, CDP_BC_RT, CDP_BROADCAST};
+
+    //command and status word fields (Ref MIL-STD-1553, p. 6)
+    static final int RT_ADDRESS_SHIFT = 11;
+    private static final int TRANSMIT_BIT = 1 << 10;
+    static final int SUB_ADDRESS_SHIFT = 5;
+    private static final int MODE_CODE_WORD_BIT = 1 << 4;
+    static final int FIELD_MASK = 0x1F;
+    private static final int MESSAGE_ERROR_BIT = 1 << 10;
+    static final int KEYS = 32 * 32;    //RT/sub address pairs, see key
+
+    //shared by messages formatting their own timestamp
+    private static final AltaTimestamp TIMESTAMPS = new AltaTimestamp();
+
+    String timeStamp;                   //ISO 8601 datetime stamp, formatted on demand
+    long epochDay;                      //days since 1970-01-01
+    long nanoOfDay;                     //time of day in nanoseconds
+    long messageGap;                    //intermessage gap in 100ns units
+    final int[] command = new int[2];   //CMD1 and CMD2 words
+    final int[] status = new int[2];    //STS1 and STS2 words
+    int cdp;                            //CDP status word
+    final char[] dataWords = new char[MAX_DATA_WORDS];  //16 bit words, only the first getDataWordsUsed are meaningful
+
+    public String getTimeStamp(){
+        if (timeStamp == null) timeStamp = TIMESTAMPS.format(this);
+        return timeStamp;
+    }
+    //the ISO string is only built if it's asked for
+    void setTime(long epochDay, long nanoOfDay){
+        this.epochDay = epochDay;
+        this.nanoOfDay = nanoOfDay;
+        timeStamp = null;
+    }
+
+    public long getEpochDay(){
+        return epochDay;
+    }
+
+    public long getNanoOfDay(){
+        return nanoOfDay;
+    }
+    //nanoseconds since 1970-01-01T00:00 (overflows outside of the years 1678 to 2261)
+    public long getEpochNanos(){
+        return epochDay * AltaTimestamp.NANOS_PER_DAY + nanoOfDay;
+    }
+
+    public int getCommandWord(int index){
+        return command[index];
+    }
+
+    public int getStatusWord(int index){
+        return status[index];
+    }
+
+    public int getCDPWord(){
+        return cdp;
+    }
+
+    public int getDataWord(int index){
+        return dataWords[index];
+    }
+    //intermessage gap in microseconds
+    public double getMessageGap(){
+        return messageGap / 10.0;
+    }
+
+    public boolean isBroadcast(){
+        return (cdp & CDP_BROADCAST) != 0;
+    }
+
+    public boolean isModeCode(){
+        return (cdp & CDP_MODE_CODE) != 0;
+    }
+    //CMD2/STS2 are only meaningful for RT-RT transfers
+    public boolean isRTtoRT(){
+        return (cdp & CDP_RT_RT) != 0;
+    }
+
+    public boolean isRTtoBC(){
+        return (cdp & CDP_RT_BC) != 0;
+    }
+
+    public boolean isBCtoRT(){
+        return (cdp & CDP_BC_RT) != 0;
+    }
+
+    public boolean isBusA(){
+        return (cdp & CDP_BUS_A) != 0;
+    }
+    //raw CDP error bits, zero if the message had none
+    public int getErrorBits(){
+        return cdp & (CDP_SPURIOUS | CDP_COMPARE | CDP_SYNC | CDP_BIT_ERROR | CDP_PARITY
+                | CDP_WORD_COUNT | CDP_NO_RESPONSE | CDP_WRONG_RT | CDP_TWO_BUS);
+    }
+    //word count as reported by the CDP word
+    public int getDataWordCount(){
+        return cdp & CDP_WORD_COUNT_MASK;
+    }
+    //number of data words actually carried in the capture
+    public int getDataWordsUsed(){
+        return Math.min(getDataWordCount(), MAX_DATA_WORDS);
+    }
+
+    //rt << 5 | sub address of a command word, indexes tables kept per RT/sub address
+    static int key(int command){
+        return (command >>> RT_ADDRESS_SHIFT & FIELD_MASK) << 5 | command >>> SUB_ADDRESS_SHIFT & FIELD_MASK;
+    }
+
+    public int getRTAddress(int index){
+        return (command[index] >>> RT_ADDRESS_SHIFT) & FIELD_MASK;
+    }
+
+    public int getRTSubAddress(int index){
+        return (command[index] >>> SUB_ADDRESS_SHIFT) & FIELD_MASK;
+    }
+
+    public boolean isTransmit(int index){
+        return (command[index] & TRANSMIT_BIT) != 0;
+    }
+    //STS only valid if not BRDCST
+    public boolean failedRTTest(int index){
+        return (status[index] & MESSAGE_ERROR_BIT) != 0 && !isBroadcast();
+    }
+    //mode code from CMD1, -1 if this isn't a mode code message (Ref MIL-STD-1553, p.10)
+    public int getModeCode(){
+        if (!isModeCode()) return -1;
+        return command[0] & FIELD_MASK;
+    }
+    //mode codes 16-31 carry a data word
+    public boolean hasModeCodeWord(){
+        return isModeCode() && (command[0] & MODE_CODE_WORD_BIT) != 0;
+    }
+
+    public String getMessageType(){
+        String messageType = "";
+        if (isModeCode())messageType="MODE_CODE";
+        if (isRTtoRT())messageType=messageType.concat("RT-RT");
+        if (isRTtoBC())messageType=messageType.concat("RT-BC");
+        if (isBCtoRT())messageType=messageType.concat("BC-RT");
+
+        //add broadcast info if present
+        if (isBroadcast())messageType=messageType.concat(" BROADCAST");
+        return messageType;
+    }
+
+    public String getMessageErrors(){
+        String messageErrors = "";
+        if ((cdp & CDP_NO_ERROR) != 0)messageErrors="NO ERROR";
+        if ((cdp & CDP_SPURIOUS) != 0)messageErrors="SPURIOUS";
+        for (int error=0;error < ERROR_BITS.length;error++){
+            if ((cdp & ERROR_BITS[error]) != 0){
+                if (messageErrors.length() > 1)messageErrors=messageErrors.concat(" ");
+                messageErrors=messageErrors.concat(ERROR_NAMES[error]);
+            }
+        }
+        return messageErrors;
+    }
+    //hex representation of the data words passed, separated by spaces
+    public String getDataWordsHex(){
+        int used = getDataWordsUsed();
+        if (used == 0) return "";
+        char[] hex = new char[used * 5 - 1];
+        for (int word=0;word < used;word++){
+            if (word > 0) hex[word * 5 - 1] = ' ';
+            toHex(dataWords[word], hex, word * 5);
+        }
+        return new String(hex);
+    }
+    //four upper case hex digits of word into target at offset
+    private static void toHex(int word, char[] target, int offset){
+        for (int digit=3;digit >= 0;digit--){
+            target[offset + digit] = (char)AltaOutputBuffer.HEX_DIGITS[word & 0xF];
+            word >>>= 4;
+        }
+    }
+    //output columns in the order of HEADERS
+    public String[] toOutputRow(){
+
+        boolean rtrt = isRTtoRT();
+        String modeCodeWord = "UNUSED";
+        if (hasModeCodeWord()){
+            char[] hex = new char[4];
+            toHex(dataWords[0], hex, 0);
+            modeCodeWord = new String(hex);
+        }
+
+        String[] outputRow = {
+            getTimeStamp(),
+            getMessageType(),
+            isBusA() ? "A" : "B",
+            Integer.toString(getRTAddress(0)),
+            rtrt ? Integer.toString(getRTAddress(1)) : "UNUSED",
+            Integer.toString(getRTSubAddress(0)),
+            rtrt ? Integer.toString(getRTSubAddress(1)) : "UNUSED",
+            isTransmit(0) ? "TRANSMIT" : "RECEIVE",
+            rtrt ? (isTransmit(1) ? "TRANSMIT" : "RECEIVE") : "UNUSED",
+            Double.toString(getMessageGap()),
+            failedRTTest(0) ? "FAILED RT TEST" : "VALID",
+            rtrt && failedRTTest(1) ? "FAILED RT TEST" : "VALID",
+            getMessageErrors(),
+            isModeCode() ? AltaMessageDecoder.describeModeCode(getModeCode()) : "UNUSED",
+            modeCodeWord,
+            Integer.toString(getDataWordCount()),
+            getDataWordsHex()
+        };
+        return outputRow;
+    }
+}
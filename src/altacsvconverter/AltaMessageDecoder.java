@@ -0,0 +1,63 @@
+package altacsvconverter;
+
+//decodes a single row of an alta csv into an AltaMessage
+public class AltaMessageDecoder {
+
+    //altaMatrix Headers
+    public static final int TIME = 0;
+    public static final int IMGAP = 3;
+    public static final int CMD1 = 4;
+    public static final int CMD2 = 5;
+    public static final int STS1 = 6;
+    public static final int STS2 = 7;
+    public static final int DATA = 8;
+    public static final int CDP = 40;
+
+    private final AltaTimestamp timestamps = new AltaTimestamp();
+
+    //decodes one alta row into a new message
+    public AltaMessage decode(String[] altaRow){
+        AltaMessage message = new AltaMessage();
+        decode(altaRow, message);
+        return message;
+    }
+    //decodes one alta row into message, words are kept as ints and data words as chars
+    public void decode(String[] altaRow, AltaMessage message){
+
+        timestamps.parse(altaRow[TIME], message);
+        message.messageGap = Long.parseLong(altaRow[IMGAP]);
+        message.command[0] = Integer.parseInt(altaRow[CMD1]);
+        message.command[1] = Integer.parseInt(altaRow[CMD2]);
+        message.status[0] = Integer.parseInt(altaRow[STS1]);
+        message.status[1] = Integer.parseInt(altaRow[STS2]);
+        message.cdp = (int)Long.parseLong(altaRow[CDP]);
+
+        for (int word=0;word < AltaMessage.MAX_DATA_WORDS;word++){
+            int value = Integer.parseInt(altaRow[DATA+word]);
+            if (value < 0 || value > AltaMessage.MAX_WORD) throw new NumberFormatException(
+                    "Data word out of range: " + altaRow[DATA+word]);
+            message.dataWords[word] = (char)value;
+        }
+    }
+    //mode code descriptions (Ref MIL-STD-1553, p.10)
+    public static String describeModeCode(int modeCode){
+        switch(modeCode){
+            case 0:  return "DYNAMIC BUS CTRL";
+            case 1:  return "SYNC";
+            case 2:  return "XMIT STATUS WORD";
+            case 3:  return "INIT SELF TEST";
+            case 4:  return "XMIT SHUT";
+            case 5:  return "OVERRIDE XMIT SHUT";
+            case 6:  return "INHIBIT TERM FLAG BIT";
+            case 7:  return "OVERRIDE INHIBIT TERM FLAG BIT";
+            case 8:  return "RESET REMOTE TERM";
+            case 16: return "XMIT VECTOR WORD";
+            case 17: return "SYNC";
+            case 18: return "XMIT LAST CMD";
+            case 19: return "XMIT BIT WORD";
+            case 20: return "SELECTED XMIT SHUT";
+            case 21: return "OVERRIDE SELECTED XMIT SHUT";
+            default: return "UNUSED";
+        }
+    }
+}
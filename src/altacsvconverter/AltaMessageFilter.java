@@ -0,0 +1,245 @@
+package altacsvconverter;
+
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+//which rows and columns a conversion keeps (-where and -columns)
+//
+//a -where expression is a comma separated list of terms, all of which have to match:
+//  rt=5            RT address, a list or ranges as in rt=1-3|7
+//  sa=1-3          sub address, rt and sa have to match the same command word
+//  type=RT-RT      MODE_CODE, RT-RT, RT-BC, BC-RT or BROADCAST, type!= excludes them
+//  bus=A           A or B
+//  errors=SYNC     NO ERROR, SPURIOUS or an error name, errors!= excludes them
+//  from=2019-03-21T12:07:44.5, to=...   time window, from inclusive and to exclusive
+//repeating a term widens it (rt=5,rt=7 is rt=5|7). the tokenizer checks rows against
+//the raw words as soon as they are parsed, so rejected rows are never decoded further
+public class AltaMessageFilter {
+
+    private static final int ALL = -1;  //every RT or sub address
+
+    private int rtMask = 0;             //bit per RT address kept, 0 until a term names one
+    private int subAddressMask = 0;     //bit per sub address kept, 0 until a term names one
+    private int typeBits = 0;           //CDP bits of which one has to be set, 0 for any
+    private int excludedTypeBits = 0;   //CDP bits that must not be set
+    private int errorBits = 0;
+    private int excludedErrorBits = 0;
+    private boolean busA = false;
+    private boolean busB = false;
+    private long from = Long.MIN_VALUE; //epoch nanoseconds
+    private long to = Long.MAX_VALUE;
+    private int[] columns;              //indexes into AltaMessage.HEADERS, in output order
+    private boolean keepDataWords = false;  //parse data words whatever the columns
+    private final List<String> terms = new ArrayList<>();
+
+    //keeps every row and column until terms or columns are added
+    public AltaMessageFilter(){
+        columns = AltaMessage.allColumns();
+    }
+    //adds the terms of a -where expression, throws IllegalArgumentException naming a bad term
+    public void where(String expression){
+
+        for (String term : expression.split(",")){
+            term = term.trim();
+            if (term.isEmpty()) continue;
+
+            int equals = term.indexOf('=');
+            if (equals <= 0) throw new IllegalArgumentException("Expected key=value in filter term '" + term + "'");
+            boolean not = term.charAt(equals-1) == '!';
+            String key = term.substring(0, not ? equals-1 : equals).trim();
+            String value = term.substring(equals+1).trim();
+            if (not && !key.equals("type") && !key.equals("errors")) throw new IllegalArgumentException(
+                    "Only type and errors can be excluded with != in '" + term + "'");
+
+            try{
+                for (String alternative : value.split("\\|")){
+                    addTerm(key, not, alternative.trim());
+                }
+            } catch (NumberFormatException | DateTimeException badValue){
+                throw new IllegalArgumentException("Bad value in filter term '" + term + "'", badValue);
+            }
+            terms.add(term);
+        }
+    }
+
+    private void addTerm(String key, boolean not, String value){
+        switch (key){
+            case "rt":
+                rtMask |= parseRange(value);
+                break;
+            case "sa":
+                subAddressMask |= parseRange(value);
+                break;
+            case "type":
+                if (not) excludedTypeBits |= lookup(value, AltaMessage.TYPE_NAMES, AltaMessage.TYPE_BITS);
+                else typeBits |= lookup(value, AltaMessage.TYPE_NAMES, AltaMessage.TYPE_BITS);
+                break;
+            case "errors":
+                if (not) excludedErrorBits |= errorBit(value);
+                else errorBits |= errorBit(value);
+                break;
+            case "bus":
+                if (value.equals("A")) busA = true;
+                else if (value.equals("B")) busB = true;
+                else throw new IllegalArgumentException("Unknown bus '" + value + "', expected A or B");
+                break;
+            case "from":
+                from = Math.max(from, epochNanos(value));
+                break;
+            case "to":
+                to = Math.min(to, epochNanos(value));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown filter key '" + key
+                        + "', expected rt, sa, type, bus, errors, from or to");
+        }
+    }
+    //bit per address of "n" or "first-last", addresses are 5 bit fields
+    private static int parseRange(String value){
+        int dash = value.indexOf('-');
+        int first = Integer.parseInt(value.substring(0, dash < 0 ? value.length() : dash).trim());
+        int last = dash < 0 ? first : Integer.parseInt(value.substring(dash+1).trim());
+        if (first < 0 || last > 31 || first > last) throw new IllegalArgumentException(
+                "Address range '" + value + "' is outside of 0-31");
+        int mask = 0;
+        for (int address=first;address <= last;address++) mask |= 1 << address;
+        return mask;
+    }
+
+    private static int lookup(String value, String[] names, int[] bits){
+        for (int index=0;index < names.length;index++){
+            if (names[index].equals(value)) return bits[index];
+        }
+        throw new IllegalArgumentException("Unknown value '" + value + "', expected one of "
+                + Arrays.toString(names));
+    }
+
+    private static int errorBit(String value){
+        if (value.equals("NO ERROR")) return AltaMessage.CDP_NO_ERROR;
+        if (value.equals("SPURIOUS")) return AltaMessage.CDP_SPURIOUS;
+        return lookup(value, AltaMessage.ERROR_NAMES, AltaMessage.ERROR_BITS);
+    }
+    //ISO 8601 local date and time, as written in the outputs
+    private static long epochNanos(String value){
+        LocalDateTime time = LocalDateTime.parse(value);
+        return time.toLocalDate().toEpochDay() * AltaTimestamp.NANOS_PER_DAY + time.toLocalTime().toNanoOfDay();
+    }
+    //keeps only the named columns in the given order, throws IllegalArgumentException for
+    //a name that isn't one of AltaMessage.HEADERS
+    public void columns(String names){
+
+        List<Integer> selected = new ArrayList<>();
+        for (String name : names.split(",")){
+            name = name.trim();
+            if (name.isEmpty()) continue;
+            int col = Arrays.asList(AltaMessage.HEADERS).indexOf(name);
+            if (col < 0) throw new IllegalArgumentException("Unknown column '" + name
+                    + "', expected one of " + Arrays.toString(AltaMessage.HEADERS));
+            if (!selected.contains(col)) selected.add(col);
+        }
+        if (selected.isEmpty()) throw new IllegalArgumentException("No columns selected");
+
+        columns = new int[selected.size()];
+        for (int index=0;index < columns.length;index++) columns[index] = selected.get(index);
+    }
+
+    public int[] getColumns(){
+        return columns.clone();
+    }
+    //for outputs that store every field of a message (-store)
+    public void keepDataWords(){
+        keepDataWords = true;
+    }
+    //copy keeping the same rows that parses data words whatever the columns, for readers
+    //handing out whole messages (see AltaConverter.messages)
+    AltaMessageFilter withDataWords(){
+        AltaMessageFilter copy = new AltaMessageFilter();
+        copy.rtMask = rtMask;
+        copy.subAddressMask = subAddressMask;
+        copy.typeBits = typeBits;
+        copy.excludedTypeBits = excludedTypeBits;
+        copy.errorBits = errorBits;
+        copy.excludedErrorBits = excludedErrorBits;
+        copy.busA = busA;
+        copy.busB = busB;
+        copy.from = from;
+        copy.to = to;
+        copy.columns = columns;
+        copy.keepDataWords = true;
+        copy.terms.addAll(terms);
+        return copy;
+    }
+    //data words are only parsed if a selected column shows them
+    public boolean needsDataWords(){
+        if (keepDataWords) return true;
+        for (int col : columns){
+            if (col == AltaMessage.DATA_WORDS || col == AltaMessage.MODE_CODE_WORD) return true;
+        }
+        return false;
+    }
+
+    //RT addresses kept, a bit per address
+    int getRTMask(){
+        return rtMask == 0 ? ALL : rtMask;
+    }
+    //sub addresses kept, a bit per address
+    int getSubAddressMask(){
+        return subAddressMask == 0 ? ALL : subAddressMask;
+    }
+    //time window in epoch nanoseconds, from inclusive and to exclusive
+    long getFrom(){
+        return from;
+    }
+
+    long getTo(){
+        return to;
+    }
+
+    public boolean acceptsTime(long epochNanos){
+        return epochNanos >= from && epochNanos < to;
+    }
+    //checks the raw CMD1, CMD2 and CDP words, CMD2 only counts for RT-RT transfers
+    public boolean accepts(int command1, int command2, int cdp){
+
+        if (typeBits != 0 && (cdp & typeBits) == 0) return false;
+        if ((cdp & excludedTypeBits) != 0) return false;
+        //SPURIOUS replaces NO ERROR in messageErrors, the filter follows it
+        int errors = (cdp & AltaMessage.CDP_SPURIOUS) != 0 ? cdp & ~AltaMessage.CDP_NO_ERROR : cdp;
+        if (errorBits != 0 && (errors & errorBits) == 0) return false;
+        if ((errors & excludedErrorBits) != 0) return false;
+        if (busA != busB && ((cdp & AltaMessage.CDP_BUS_A) != 0) != busA) return false;
+
+        if (!filtersAddresses()) return true;
+        if (matches(command1)) return true;
+        return (cdp & AltaMessage.CDP_RT_RT) != 0 && matches(command2);
+    }
+
+    public boolean accepts(AltaMessage message){
+        return acceptsTime(message.getEpochNanos())
+                && accepts(message.command[0], message.command[1], message.cdp);
+    }
+
+    boolean filtersAddresses(){
+        return rtMask != 0 || subAddressMask != 0;
+    }
+
+    private boolean matches(int command){
+        int rt = (command >>> AltaMessage.RT_ADDRESS_SHIFT) & AltaMessage.FIELD_MASK;
+        int subAddress = (command >>> AltaMessage.SUB_ADDRESS_SHIFT) & AltaMessage.FIELD_MASK;
+        return (getRTMask() & 1 << rt) != 0 && (getSubAddressMask() & 1 << subAddress) != 0;
+    }
+    //the terms and columns, a watch manifest kept for another filter is started over
+    @Override
+    public String toString(){
+        StringBuilder description = new StringBuilder("where=");
+        for (String term : terms) description.append(term).append(';');
+        description.append("columns=");
+        for (int index=0;index < columns.length;index++){
+            description.append(index == 0 ? "" : ",").append(AltaMessage.HEADERS[columns[index]]);
+        }
+        return description.toString();
+    }
+}
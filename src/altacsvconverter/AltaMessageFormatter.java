@@ -0,0 +1,188 @@
+package altacsvconverter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+//formats decoded messages as json lines or csv rows straight into an AltaOutputBuffer,
+//header keys and constant values are encoded once up front
+public class AltaMessageFormatter {
+
+    private static final byte[] UNUSED = ascii("UNUSED");
+    private static final byte[] TRANSMIT = ascii("TRANSMIT");
+    private static final byte[] RECEIVE = ascii("RECEIVE");
+    private static final byte[] VALID = ascii("VALID");
+    private static final byte[] FAILED_RT_TEST = ascii("FAILED RT TEST");
+    private static final byte[] MODE_CODE = ascii("MODE_CODE");
+    private static final byte[] RT_RT = ascii("RT-RT");
+    private static final byte[] RT_BC = ascii("RT-BC");
+    private static final byte[] BC_RT = ascii("BC-RT");
+    private static final byte[] BROADCAST = ascii(" BROADCAST");
+    private static final byte[] NO_ERROR = ascii("NO ERROR");
+    private static final byte[] SPURIOUS = ascii("SPURIOUS");
+
+    //AltaMessage.ERROR_NAMES encoded, in the order they are reported in messageErrors
+    private static final byte[][] ERROR_NAMES = new byte[AltaMessage.ERROR_NAMES.length][];
+    static {
+        for (int error=0;error < ERROR_NAMES.length;error++) ERROR_NAMES[error] = ascii(AltaMessage.ERROR_NAMES[error]);
+    }
+
+    //mode code descriptions indexed by mode code
+    private static final byte[][] MODE_CODE_DESC_NAMES = new byte[32][];
+    static {
+        for (int modeCode=0;modeCode < MODE_CODE_DESC_NAMES.length;modeCode++){
+            MODE_CODE_DESC_NAMES[modeCode] = ascii(AltaMessageDecoder.describeModeCode(modeCode));
+        }
+    }
+
+    private final boolean csv;          //csv rows instead of json lines
+    private final boolean numericWords; //json data words as an array of numbers instead of hex
+    private final byte[] csvHeader;     //header row for csv output
+    private final int[] columns;        //columns written, in output order
+    private final byte[][] prefixes;    //bytes written before each written column
+    private final byte[] suffix;        //bytes closing each row
+    private final AltaTimestamp timestamps = new AltaTimestamp();
+
+    public AltaMessageFormatter(String[] headers, boolean csv){
+        this(headers, csv, false);
+    }
+    //numericWords writes json data words as an array of numbers, ignored for csv
+    public AltaMessageFormatter(String[] headers, boolean csv, boolean numericWords){
+        this(headers, AltaMessage.allColumns(), csv, numericWords);
+    }
+    //writes only columns (indexes into headers) in the given order, the others are never computed
+    public AltaMessageFormatter(String[] headers, int[] columns, boolean csv, boolean numericWords){
+        this.csv = csv;
+        this.numericWords = numericWords && !csv;
+        this.columns = columns.clone();
+
+        //create header row
+        StringBuilder header = new StringBuilder();
+        for(int index=0;index < columns.length;index++){
+            header.append(headers[columns[index]]);
+            if(index!=columns.length -1) header.append(",");
+        }
+        csvHeader = ascii(header.append(System.lineSeparator()).toString());
+
+        //json lines open every key and close the previous value, csv only separates.
+        //a numeric data word array replaces the quotes of its value
+        prefixes = new byte[columns.length][];
+        String close = "";
+        for(int index=0;index < columns.length;index++){
+            String open = this.numericWords && columns[index] == AltaMessage.DATA_WORDS ? "[" : "\"";
+            if (csv) prefixes[index] = ascii(index == 0 ? "" : ",");
+            else prefixes[index] = ascii((index == 0 ? "{" : close + ",") + "\"" + headers[columns[index]] + "\":" + open);
+            close = open.equals("[") ? "]" : "\"";
+        }
+        suffix = ascii((csv ? "" : close + "}") + System.lineSeparator());
+    }
+
+    private static byte[] ascii(String value){
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+    //written once at the start of an output file
+    public void writeHeader(AltaOutputBuffer output) throws IOException{
+        if (csv) output.write(csvHeader);
+    }
+
+    public void write(AltaMessage message, AltaOutputBuffer output) throws IOException{
+
+        for (int index=0;index < columns.length;index++){
+            output.write(prefixes[index]);
+            writeColumn(columns[index], message, output);
+        }
+        output.write(suffix);
+    }
+
+    private void writeColumn(int col, AltaMessage message, AltaOutputBuffer output) throws IOException{
+
+        boolean rtrt = message.isRTtoRT();
+        switch (col){
+            case AltaMessage.TIMESTAMP:
+                timestamps.write(message, output);
+                break;
+            case AltaMessage.MESSAGE_TYPE:
+                if (message.isModeCode()) output.write(MODE_CODE);
+                if (rtrt) output.write(RT_RT);
+                if (message.isRTtoBC()) output.write(RT_BC);
+                if (message.isBCtoRT()) output.write(BC_RT);
+                if (message.isBroadcast()) output.write(BROADCAST);
+                break;
+            case AltaMessage.MESSAGE_BUS:
+                output.write(message.isBusA() ? 'A' : 'B');
+                break;
+            case AltaMessage.RT_ADDRESS_0:
+                output.writeLong(message.getRTAddress(0));
+                break;
+            case AltaMessage.RT_ADDRESS_1:
+                if (rtrt) output.writeLong(message.getRTAddress(1));
+                else output.write(UNUSED);
+                break;
+            case AltaMessage.RT_SUB_ADDRESS_0:
+                output.writeLong(message.getRTSubAddress(0));
+                break;
+            case AltaMessage.RT_SUB_ADDRESS_1:
+                if (rtrt) output.writeLong(message.getRTSubAddress(1));
+                else output.write(UNUSED);
+                break;
+            case AltaMessage.MESSAGE_FLOW_0:
+                output.write(message.isTransmit(0) ? TRANSMIT : RECEIVE);
+                break;
+            case AltaMessage.MESSAGE_FLOW_1:
+                if (rtrt) output.write(message.isTransmit(1) ? TRANSMIT : RECEIVE);
+                else output.write(UNUSED);
+                break;
+            case AltaMessage.MESSAGE_GAP:
+                output.writeTenths(message.messageGap);
+                break;
+            case AltaMessage.MESSAGE_VALIDITY_0:
+                output.write(message.failedRTTest(0) ? FAILED_RT_TEST : VALID);
+                break;
+            case AltaMessage.MESSAGE_VALIDITY_1:
+                output.write(rtrt && message.failedRTTest(1) ? FAILED_RT_TEST : VALID);
+                break;
+            case AltaMessage.MESSAGE_ERRORS:
+                writeErrors(message.getCDPWord(), output);
+                break;
+            case AltaMessage.MODE_CODE_DESC:
+                if (message.isModeCode()) output.write(MODE_CODE_DESC_NAMES[message.getModeCode()]);
+                else output.write(UNUSED);
+                break;
+            case AltaMessage.MODE_CODE_WORD:
+                if (message.hasModeCodeWord()) output.writeHexWord(message.getDataWord(0));
+                else output.write(UNUSED);
+                break;
+            case AltaMessage.DATA_WORD_COUNT:
+                output.writeLong(message.getDataWordCount());
+                break;
+            case AltaMessage.DATA_WORDS:
+                if (numericWords){
+                    for (int word=0;word < message.getDataWordsUsed();word++){
+                        if (word > 0) output.write(',');
+                        output.writeLong(message.getDataWord(word));
+                    }
+                    break;
+                }
+                for (int word=0;word < message.getDataWordsUsed();word++){
+                    if (word > 0) output.write(' ');
+                    output.writeHexWord(message.getDataWord(word));
+                }
+                break;
+        }
+    }
+    //parses CDP Status Word error bits (Ref AltaView Users Manual, p. 211)
+    private void writeErrors(int cdp, AltaOutputBuffer output) throws IOException{
+
+        //SPURIOUS replaces NO ERROR, the remaining errors are appended
+        if ((cdp & AltaMessage.CDP_SPURIOUS) != 0) output.write(SPURIOUS);
+        else if ((cdp & AltaMessage.CDP_NO_ERROR) != 0) output.write(NO_ERROR);
+        boolean written = (cdp & (AltaMessage.CDP_SPURIOUS | AltaMessage.CDP_NO_ERROR)) != 0;
+
+        for (int error=0;error < AltaMessage.ERROR_BITS.length;error++){
+            if ((cdp & AltaMessage.ERROR_BITS[error]) != 0){
+                if (written) output.write(' ');
+                output.write(ERROR_NAMES[error]);
+                written = true;
+            }
+        }
+    }
+}
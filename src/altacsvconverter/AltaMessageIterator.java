@@ -0,0 +1,63 @@
+package altacsvconverter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+//messages of a capture one at a time, see AltaConverter.messages
+//
+//every message is a new object the caller can keep. a failure reading or parsing the
+//capture is thrown from hasNext or next, wrapped in UncheckedIOException if it's an
+//IOException (not thread safe)
+public class AltaMessageIterator implements Iterator<AltaMessage>, Closeable {
+
+    private final AltaCSVTokenizer tokenizer;
+    private final Closeable capture;    //closed with the iterator
+    private AltaMessage next;           //read ahead by hasNext, null if not read yet
+    private boolean done = false;
+
+    AltaMessageIterator(AltaCSVTokenizer tokenizer, Closeable capture){
+        this.tokenizer = tokenizer;
+        this.capture = capture;
+    }
+
+    @Override
+    public boolean hasNext(){
+        if (next != null) return true;
+        if (done) return false;
+        AltaMessage message = new AltaMessage();
+        try{
+            if (tokenizer.next(message)) next = message;
+            else done = true;
+        } catch (IOException failure){
+            done = true;
+            throw new UncheckedIOException(failure);
+        }
+        return next != null;
+    }
+
+    @Override
+    public AltaMessage next(){
+        if (!hasNext()) throw new NoSuchElementException();
+        AltaMessage message = next;
+        next = null;
+        return message;
+    }
+    //rows the tokenizer skipped so far, see AltaCSVTokenizer
+    public long getMalformedRows(){
+        return tokenizer.getMalformedRows();
+    }
+
+    public long getFilteredRows(){
+        return tokenizer.getFilteredRows();
+    }
+
+    @Override
+    public void close() throws IOException{
+        done = true;
+        next = null;
+        capture.close();
+    }
+}
@@ -0,0 +1,162 @@
+package altacsvconverter;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+//collects the metrics of finished conversions, registered as an MBean and written as a
+//json summary (-metrics <file>)
+public class AltaMetrics implements AltaMetricsMBean {
+
+    public static final String OBJECT_NAME = "altacsvconverter:type=AltaMetrics";
+
+    private final AltaConversionMetrics totals = new AltaConversionMetrics();
+    private long filesConverted = 0;
+    private long filesFailed = 0;
+    private String lastFailure;         //file and cause of the last failure, null if none
+
+    //adds a finished (or failed) conversion to the totals
+    public void record(AltaConversionResult result){
+        record(result.getAltaFileName(), result.getMetrics(), result.getFailure());
+    }
+    //adds a conversion that has no result (a capture sent to AltaConversionServer), failure
+    //is null if it succeeded
+    public synchronized void record(String name, AltaConversionMetrics metrics, Exception failure){
+        totals.add(metrics);
+        if (failure != null){
+            filesFailed++;
+            lastFailure = name + ": " + failure;
+        }
+        else filesConverted++;
+    }
+    //makes the totals visible to JMX clients (jconsole etc.)
+    public void register(){
+        try{
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+        } catch (JMException failure){
+            System.out.println("Metrics are not available over JMX: " + failure);
+        }
+    }
+    //sum of the peak usage of the heap pools since the JVM started
+    public static long peakHeapUsage(){
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()){
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null){
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+    //writes the totals, followed by one entry per result, to path as json
+    public synchronized void writeSummary(Path path, List<AltaConversionResult> results, long elapsedNanos)
+            throws IOException{
+
+        AltaOutputBuffer output = new AltaOutputBuffer(4096);
+        output.writeAscii("{\"elapsedSeconds\":" + elapsedNanos / 1e9);
+        output.writeAscii(",\"filesConverted\":");
+        output.writeLong(filesConverted);
+        output.writeAscii(",\"filesFailed\":");
+        output.writeLong(filesFailed);
+        output.writeAscii(",\"peakHeapBytes\":");
+        output.writeLong(peakHeapUsage());
+        output.write(',');
+        totals.writeJSON(output);
+
+        output.writeAscii(",\"files\":[");
+        for (int index=0;index < results.size();index++){
+            AltaConversionResult result = results.get(index);
+            output.writeAscii(index == 0 ? "{\"file\":\"" : ",{\"file\":\"");
+            output.writeJSONEscaped(Paths.get(result.getAltaFileName()).getFileName().toString());
+            output.writeAscii("\",\"wallSeconds\":" + result.getElapsedNanos() / 1e9);
+            if (result.failed()){
+                output.writeAscii(",\"failure\":\"");
+                output.writeJSONEscaped(String.valueOf(result.getFailure()));
+                output.write('"');
+            }
+            output.write(',');
+            result.getMetrics().writeJSON(output);
+            output.write('}');
+        }
+        output.writeAscii("]}");
+        output.writeAscii(System.lineSeparator());
+
+        //replaced in one move so readers never see half a summary
+        Path temporary = Paths.get(path + ".tmp");
+        Files.write(temporary, output.toString().getBytes(StandardCharsets.ISO_8859_1));
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public synchronized long getFilesConverted(){
+        return filesConverted;
+    }
+
+    @Override
+    public synchronized long getFilesFailed(){
+        return filesFailed;
+    }
+
+    @Override
+    public synchronized long getMessages(){
+        return totals.getMessages();
+    }
+
+    @Override
+    public synchronized long getMalformedRows(){
+        return totals.getMalformedRows();
+    }
+
+    @Override
+    public synchronized long getFilteredRows(){
+        return totals.getFilteredRows();
+    }
+
+    @Override
+    public synchronized long getBytesRead(){
+        return totals.getBytesRead();
+    }
+
+    @Override
+    public synchronized long getBytesWritten(){
+        return totals.getBytesWritten();
+    }
+
+    @Override
+    public synchronized double getReadSeconds(){
+        return totals.getReadNanos() / 1e9;
+    }
+
+    @Override
+    public synchronized double getDecodeSeconds(){
+        return totals.getDecodeNanos() / 1e9;
+    }
+
+    @Override
+    public synchronized double getWriteSeconds(){
+        return totals.getWriteNanos() / 1e9;
+    }
+
+    @Override
+    public long getPeakHeapBytes(){
+        return peakHeapUsage();
+    }
+
+    @Override
+    public synchronized String getLastFailure(){
+        return lastFailure;
+    }
+
+    @Override
+    public synchronized long getErrorCount(String errorName){
+        return totals.getErrorCount(errorName);
+    }
+}
@@ -0,0 +1,33 @@
+package altacsvconverter;
+
+//totals of every conversion since the converter started, exposed over JMX as
+//altacsvconverter:type=AltaMetrics
+public interface AltaMetricsMBean {
+
+    long getFilesConverted();
+
+    long getFilesFailed();
+
+    long getMessages();
+
+    long getMalformedRows();
+
+    long getFilteredRows();
+
+    long getBytesRead();
+
+    long getBytesWritten();
+
+    double getReadSeconds();
+
+    double getDecodeSeconds();
+
+    double getWriteSeconds();
+
+    long getPeakHeapBytes();
+
+    String getLastFailure();
+
+    //messages flagged with errorName, see AltaMessage.getMessageErrors
+    long getErrorCount(String errorName);
+}
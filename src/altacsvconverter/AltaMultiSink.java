@@ -0,0 +1,50 @@
+package altacsvconverter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+//fans every batch out to several sinks so each capture is only decoded once
+public class AltaMultiSink implements AltaOutputSink {
+
+    private final List<AltaOutputSink> sinks;
+
+    public AltaMultiSink(List<AltaOutputSink> sinks){
+        this.sinks = new ArrayList<>(sinks);
+    }
+    //one new sink from each factory
+    public static AltaMultiSink create(List<? extends AltaSinkFactory> factories){
+        List<AltaOutputSink> sinks = new ArrayList<>();
+        for (AltaSinkFactory factory : factories) sinks.add(factory.createSink());
+        return new AltaMultiSink(sinks);
+    }
+
+    public List<AltaOutputSink> getSinks(){
+        return Collections.unmodifiableList(sinks);
+    }
+
+    @Override
+    public void open(AltaOutputFiles files) throws IOException{
+        for (AltaOutputSink sink : sinks) sink.open(files);
+    }
+
+    @Override
+    public void writeBatch(AltaMessage[] batch, int count) throws IOException{
+        for (AltaOutputSink sink : sinks) sink.writeBatch(batch, count);
+    }
+    //closes every sink even if one of them fails
+    @Override
+    public void close() throws IOException{
+        IOException failure = null;
+        for (AltaOutputSink sink : sinks){
+            try{
+                sink.close();
+            } catch (IOException | RuntimeException message){
+                if (failure == null) failure = message instanceof IOException
+                        ? (IOException)message : new IOException(message);
+            }
+        }
+        if (failure != null) throw failure;
+    }
+}
@@ -0,0 +1,196 @@
+package altacsvconverter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+//reusable byte buffer that output is formatted into as ASCII, either flushed to a
+//stream when full or grown in memory when it has no stream
+public class AltaOutputBuffer {
+
+    public static final int DEFAULT_CAPACITY = 1 << 20;
+
+    //upper case hex digits, also used by AltaMessage
+    static final byte[] HEX_DIGITS = {
+        '0','1','2','3','4','5','6','7','8','9','A','B','C','D','E','F'
+    };
+
+    //two hex digits for every byte value
+    private static final byte[] HEX_PAIRS = new byte[512];
+    static {
+        for (int value=0;value < 256;value++){
+            HEX_PAIRS[2 * value] = HEX_DIGITS[value >>> 4];
+            HEX_PAIRS[2 * value + 1] = HEX_DIGITS[value & 0xF];
+        }
+    }
+
+    private final OutputStream out;     //destination, null if the buffer only grows
+    private byte[] bytes;
+    private int length = 0;
+
+    //buffer flushing to out every capacity bytes
+    public AltaOutputBuffer(OutputStream out, int capacity){
+        this.out = out;
+        this.bytes = new byte[capacity];
+    }
+    //in memory buffer
+    public AltaOutputBuffer(int capacity){
+        this(null, capacity);
+    }
+
+    private void ensure(int needed) throws IOException{
+        if (length + needed <= bytes.length) return;
+        if (out != null){
+            flushBuffer();
+            if (needed <= bytes.length) return;
+        }
+        byte[] grown = new byte[Math.max(bytes.length * 2, length + needed)];
+        System.arraycopy(bytes, 0, grown, 0, length);
+        bytes = grown;
+    }
+
+    public void write(int b) throws IOException{
+        ensure(1);
+        bytes[length++] = (byte)b;
+    }
+
+    public void write(byte[] source) throws IOException{
+        write(source, 0, source.length);
+    }
+
+    public void write(byte[] source, int offset, int count) throws IOException{
+        //large blocks skip the buffer
+        if (out != null && count >= bytes.length){
+            flushBuffer();
+            out.write(source, offset, count);
+            return;
+        }
+        ensure(count);
+        System.arraycopy(source, offset, bytes, length, count);
+        length += count;
+    }
+    //appends the contents of another buffer
+    public void write(AltaOutputBuffer source) throws IOException{
+        write(source.bytes, 0, source.length);
+    }
+    //value must be ASCII, each char is written as one byte
+    public void writeAscii(String value) throws IOException{
+        int count = value.length();
+        ensure(count);
+        for (int index=0;index < count;index++){
+            bytes[length++] = (byte)value.charAt(index);
+        }
+    }
+    //writes value escaped for the inside of a JSON string
+    public void writeJSONEscaped(String value) throws IOException{
+        int count = value.length();
+        ensure(count);
+        for (int index=0;index < count;index++){
+            char c = value.charAt(index);
+            if (c == '"' || c == '\\'){
+                write('\\');
+                write(c);
+            }
+            else if (c < 0x20 || c > 0x7E){
+                write('\\');
+                write('u');
+                writeHex(c, 4);
+            }
+            else write(c);
+        }
+    }
+
+    public void writeLong(long value) throws IOException{
+        if (value == Long.MIN_VALUE){
+            writeAscii(Long.toString(value));
+            return;
+        }
+        ensure(20);
+        if (value < 0){
+            bytes[length++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (long rest = value / 10;rest > 0;rest /= 10) digits++;
+        length += digits;
+        for (int index=length-1;digits > 0;digits--,index--){
+            bytes[index] = (byte)('0' + value % 10);
+            value /= 10;
+        }
+    }
+    //upper case hex, zero padded to at least minDigits
+    public void writeHex(int value, int minDigits) throws IOException{
+        int digits = Math.max(minDigits, (35 - Integer.numberOfLeadingZeros(value)) / 4);
+        ensure(digits);
+        length += digits;
+        for (int index=length-1;digits > 0;digits--,index--){
+            bytes[index] = HEX_DIGITS[value & 0xF];
+            value >>>= 4;
+        }
+    }
+    //decimal, zero padded to exactly digits (value must fit)
+    public void writeDigits(int value, int digits) throws IOException{
+        ensure(digits);
+        length += digits;
+        for (int index=length-1;digits > 0;digits--,index--){
+            bytes[index] = (byte)('0' + value % 10);
+            value /= 10;
+        }
+    }
+    //16 bit word as four upper case hex digits
+    public void writeHexWord(int word) throws IOException{
+        ensure(4);
+        int high = (word >>> 7) & 0x1FE;
+        int low = (word & 0xFF) << 1;
+        bytes[length] = HEX_PAIRS[high];
+        bytes[length+1] = HEX_PAIRS[high+1];
+        bytes[length+2] = HEX_PAIRS[low];
+        bytes[length+3] = HEX_PAIRS[low+1];
+        length += 4;
+    }
+    //writes tenths as a decimal, matching Double.toString(tenths / 10.0)
+    public void writeTenths(long tenths) throws IOException{
+        //Double.toString switches to scientific notation from 10^7
+        if (tenths < 0 || tenths >= 100000000L){
+            writeAscii(Double.toString(tenths / 10.0));
+            return;
+        }
+        writeLong(tenths / 10);
+        write('.');
+        write((int)('0' + tenths % 10));
+    }
+
+    //contents of the buffer, mostly useful for small in memory buffers
+    @Override
+    public String toString(){
+        return new String(bytes, 0, length, StandardCharsets.ISO_8859_1);
+    }
+
+    public int size(){
+        return length;
+    }
+
+    public void reset(){
+        length = 0;
+    }
+
+    private void flushBuffer() throws IOException{
+        if (length > 0) out.write(bytes, 0, length);
+        length = 0;
+    }
+
+    public void flush() throws IOException{
+        if (out == null) return;
+        flushBuffer();
+        out.flush();
+    }
+
+    public void close() throws IOException{
+        if (out == null) return;
+        try{
+            flushBuffer();
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package altacsvconverter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+//hands out the output streams of one conversion, one per output extension
+public interface AltaOutputFiles {
+
+    //opens the output with this extension (ex. ".json"), the sink closes the stream
+    OutputStream create(String extension) throws IOException;
+
+    //opens the output with this extension left by an earlier conversion of the same capture,
+    //positioned at its end, null if there's none to append to
+    OutputStream append(String extension) throws IOException;
+}
@@ -0,0 +1,71 @@
+package altacsvconverter;
+
+//output formats selectable from the command line
+public enum AltaOutputFormat implements AltaSinkFactory {
+
+    JSON("-json"),
+    CSV("-csv"),
+    COLUMNAR("-columnar"),
+    STORE("-store"),                    //indexed fixed width store, always holds every field
+    STATS("-stats");                    //bus statistics report, one per capture
+
+    private final String flag;          //command line flag selecting the format
+
+    AltaOutputFormat(String flag){
+        this.flag = flag;
+    }
+
+    public String getFlag(){
+        return flag;
+    }
+    //format selected by a command line flag, null if the flag isn't a format
+    public static AltaOutputFormat fromFlag(String flag){
+        for (AltaOutputFormat format : values()){
+            if (format.flag.equals(flag)) return format;
+        }
+        return null;
+    }
+
+    @Override
+    public AltaOutputSink createSink(){
+        return createSink(AltaMessage.allColumns());
+    }
+    //sink writing only columns, indexes into AltaMessage.HEADERS
+    public AltaOutputSink createSink(int[] columns){
+        return createSink(columns, false);
+    }
+    //gzip compresses the text outputs, columnar files and stores are compressed or
+    //read by position and are written as they are, as is the small statistics report
+    public AltaOutputSink createSink(int[] columns, boolean gzip){
+        return createSink(columns, gzip, false);
+    }
+    //numericWords writes json data words as an array of numbers, the other formats have
+    //no use for it
+    public AltaOutputSink createSink(int[] columns, boolean gzip, boolean numericWords){
+        switch (this){
+            case CSV: return new AltaTextSink(true, false, columns, gzip);
+            case COLUMNAR: return new AltaColumnarSink(columns);
+            case STORE: return new AltaStoreSink();
+            case STATS: return new AltaStatisticsSink();
+            default: return new AltaTextSink(false, numericWords, columns, gzip);
+        }
+    }
+    //factory for sinks of this format writing only the columns kept by filter (every
+    //column if it's null), gzipped if gzip is set
+    public AltaSinkFactory configure(AltaMessageFilter filter, boolean gzip){
+        return configure(filter, gzip, false);
+    }
+    //as above, json data words written as numbers if numericWords is set
+    public AltaSinkFactory configure(final AltaMessageFilter filter, final boolean gzip,
+            boolean numericWords){
+        final int[] columns = filter == null ? AltaMessage.allColumns() : filter.getColumns();
+        final boolean numbers = numericWords && this == JSON;
+        return new AltaSinkFactory(){
+            @Override public AltaOutputSink createSink()
+            { return AltaOutputFormat.this.createSink(columns, gzip, numbers); }
+            @Override public String toString()
+            { return AltaOutputFormat.this + (gzip ? " gzip" : "") + (numbers ? " numericWords" : "")
+                    + (filter == null ? "" : " " + filter); }
+        };
+    }
+}
@@ -0,0 +1,15 @@
+package altacsvconverter;
+
+import java.io.IOException;
+
+//receives the decoded messages of one capture
+public interface AltaOutputSink {
+
+    //called once before the first batch
+    void open(AltaOutputFiles files) throws IOException;
+
+    //messages are reused after this returns, so sinks must not keep references to them
+    void writeBatch(AltaMessage[] batch, int count) throws IOException;
+
+    void close() throws IOException;
+}
@@ -0,0 +1,204 @@
+package altacsvconverter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+//converts one alta csv by splitting it into line-aligned byte ranges that are decoded
+//concurrently and written back in their original order
+public class AltaRangeConverter {
+
+    public static final long DEFAULT_RANGE_BYTES = 8L << 20;
+
+    //rough size of one row in the csv, used to size the message arrays of a range
+    private static final int BYTES_PER_ROW = 256;
+
+    private final List<AltaSinkFactory> sinks;  //outputs written for every capture
+    private final ExecutorService pool; //workers decoding the ranges
+    private final int inFlight;         //ranges decoded ahead of the writer
+    private final long rangeBytes;      //target size of each range
+    private boolean skipMalformed = false;  //count and skip rows that can't be parsed
+    private AltaMessageFilter filter;   //rows to keep, null for all of them
+
+    public AltaRangeConverter(List<? extends AltaSinkFactory> sinks, ExecutorService pool,
+            int inFlight, long rangeBytes){
+        this.sinks = new ArrayList<AltaSinkFactory>(sinks);
+        this.pool = pool;
+        this.inFlight = Math.max(1, inFlight);
+        this.rangeBytes = Math.max(1, rangeBytes);
+    }
+    //decoded messages of one range, already encoded for the sinks that allow it
+    private static class Range {
+        AltaMessage[] messages;
+        int count;                      //number of messages in the range
+        AltaOutputBuffer[] encoded;     //per sink, null if the sink takes the messages
+        long readNanos;                 //stage times on the worker
+        long decodeNanos;
+        long encodeNanos;
+        long bytesRead;
+        long malformedRows;
+        long filteredRows;
+    }
+
+    public void setSkipMalformed(boolean skipMalformed){
+        this.skipMalformed = skipMalformed;
+    }
+
+    public void setFilter(AltaMessageFilter filter){
+        this.filter = filter;
+    }
+    //converts altaFileName into part files, see AltaStreamConverter.convertToPart
+    public AltaConversionResult convertToPart(final String altaFileName, String folderName)
+            throws IOException{
+
+        long start = System.nanoTime();
+        AltaConversionResult result = new AltaConversionResult(altaFileName, folderName);
+        AltaConversionMetrics metrics = result.getMetrics();
+        ArrayDeque<Future<Range>> pending = new ArrayDeque<>();
+        final AltaMultiSink sink = AltaMultiSink.create(sinks);
+        boolean opened = false;
+        long messages = 0;
+
+        try (FileChannel channel = FileChannel.open(Paths.get(altaFileName), StandardOpenOption.READ)){
+
+            long size = channel.size();
+
+            //Pop the first line of the file
+            long rangeStart = nextLineStart(channel, 0, size);
+
+            while (rangeStart < size || !pending.isEmpty()){
+
+                //keep a bounded number of ranges queued ahead of the writer
+                while (rangeStart < size && pending.size() < inFlight){
+                    final long from = rangeStart;
+                    final long to = nextLineStart(channel, Math.min(size, from + rangeBytes), size);
+                    pending.add(pool.submit(new Callable<Range>(){
+                        @Override public Range call() throws IOException{
+                            return decodeRange(altaFileName, from, to, sink);
+                        }
+                    }));
+                    rangeStart = to;
+                }
+
+                Range range = pending.poll().get();
+                metrics.addRead(range.readNanos, range.bytesRead);
+                metrics.addDecode(range.decodeNanos);
+                metrics.addWrite(range.encodeNanos);
+                metrics.addMalformedRows(range.malformedRows);
+                metrics.addFilteredRows(range.filteredRows);
+                if (range.count == 0) continue;
+
+                long writing = System.nanoTime();
+                if (!opened){
+                    result.setStartTime(range.messages[0]);
+                    sink.open(result);
+                    opened = true;
+                }
+                writeRange(range, sink);
+                metrics.count(range.messages, range.count);
+                messages += range.count;
+                metrics.addWrite(System.nanoTime() - writing);
+            }
+            long closing = System.nanoTime();
+            if (opened) sink.close();
+            metrics.addWrite(System.nanoTime() - closing);
+        } catch (IOException | RuntimeException | InterruptedException | ExecutionException failure){
+            for (Future<Range> future : pending) future.cancel(true);
+            if (opened) AltaStreamConverter.closeQuietly(sink);
+            result.discard();
+            Exception cause = failure;
+            if (failure instanceof ExecutionException && failure.getCause() instanceof Exception){
+                cause = (Exception)failure.getCause();
+            }
+            if (cause instanceof IOException) throw (IOException)cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+            throw new IOException(cause);
+        }
+
+        if (!opened) System.out.println("No messages found in " + altaFileName + ".");
+
+        result.setMessages(messages);
+        result.setElapsedNanos(System.nanoTime() - start);
+        return result;
+    }
+
+    private void writeRange(Range range, AltaMultiSink sink) throws IOException{
+        List<AltaOutputSink> targets = sink.getSinks();
+        for (int index=0;index < targets.size();index++){
+            if (range.encoded[index] != null){
+                ((AltaEncodedSink)targets.get(index)).writeEncoded(range.encoded[index]);
+            }
+            else targets.get(index).writeBatch(range.messages, range.count);
+        }
+    }
+    //returns the offset just past the first newline at or after position
+    private long nextLineStart(FileChannel channel, long position, long size) throws IOException{
+
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        while (position < size){
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) break;
+            for (int index=0;index < read;index++){
+                if (buffer.get(index) == '\n') return position + index + 1;
+            }
+            position += read;
+        }
+        return size;
+    }
+    //reads and decodes the rows in [from, to), each range has its own tokenizer
+    private Range decodeRange(String altaFileName, long from, long to, AltaMultiSink sink)
+            throws IOException{
+
+        long start = System.nanoTime();
+        Range range = new Range();
+        range.messages = new AltaMessage[(int)Math.min(1 << 20, (to - from) / BYTES_PER_ROW + 1)];
+
+        try (FileChannel channel = FileChannel.open(Paths.get(altaFileName), StandardOpenOption.READ)){
+            channel.position(from);
+            AltaCSVTokenizer tokenizer = new AltaCSVTokenizer(channel,
+                    (int)Math.min(AltaCSVTokenizer.DEFAULT_BUFFER_SIZE, to - from + 1), to - from);
+
+            tokenizer.setSkipMalformed(skipMalformed);
+            tokenizer.setFilter(filter);
+            tokenizer.setStartOffset(from);
+
+            AltaMessage message = new AltaMessage();
+            while (tokenizer.next(message)){
+                if (range.count == range.messages.length){
+                    AltaMessage[] grown = new AltaMessage[range.count * 2];
+                    System.arraycopy(range.messages, 0, grown, 0, range.count);
+                    range.messages = grown;
+                }
+                range.messages[range.count++] = message;
+                message = new AltaMessage();
+            }
+            range.readNanos = tokenizer.getReadNanos();
+            range.bytesRead = tokenizer.getBytesRead();
+            range.malformedRows = tokenizer.getMalformedRows();
+            range.filteredRows = tokenizer.getFilteredRows();
+        }
+        long decoded = System.nanoTime();
+        range.decodeNanos = decoded - start - range.readNanos;
+
+        //sinks that can encode on this thread get their bytes ready here
+        List<AltaOutputSink> targets = sink.getSinks();
+        range.encoded = new AltaOutputBuffer[targets.size()];
+        for (int index=0;index < targets.size();index++){
+            if (targets.get(index) instanceof AltaEncodedSink){
+                range.encoded[index] = ((AltaEncodedSink)targets.get(index)).encode(range.messages, range.count);
+            }
+        }
+        range.encodeNanos = System.nanoTime() - decoded;
+        return range;
+    }
+}
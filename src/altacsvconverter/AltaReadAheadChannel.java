@@ -0,0 +1,112 @@
+package altacsvconverter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+//reads in on a background thread ahead of the caller, so a slow stream (gunzip) runs
+//alongside the decoding instead of in turn with it
+//(not thread safe, one thread reads and closes)
+public class AltaReadAheadChannel implements ReadableByteChannel {
+
+    private static final int BLOCK_BYTES = 1 << 18;
+    private static final int BLOCKS = 4;        //blocks in flight, bounds the memory held
+    private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+    private final InputStream in;
+    private final BlockingQueue<ByteBuffer> filled = new ArrayBlockingQueue<>(BLOCKS + 1);
+    private final BlockingQueue<byte[]> free = new ArrayBlockingQueue<>(BLOCKS);
+    private final Thread reader;
+    private volatile IOException failure;       //failure of the background thread
+    private ByteBuffer current;                 //block being handed out, null before the first
+    private boolean eof = false;
+    private boolean open = true;
+
+    //takes ownership of in, it's closed from the background thread
+    public AltaReadAheadChannel(InputStream in, String name){
+        this.in = in;
+        for (int index=0;index < BLOCKS;index++) free.add(new byte[BLOCK_BYTES]);
+
+        reader = new Thread(new Runnable(){
+            @Override public void run(){
+                fill();
+            }
+        }, name);
+        reader.setDaemon(true);
+        reader.start();
+    }
+    //background thread, fills free blocks until the end of in, a failure or close
+    private void fill(){
+        try{
+            while (true){
+                byte[] block = free.take();
+                int length = 0;
+                int read = 0;
+                while (length < block.length && (read = in.read(block, length, block.length - length)) >= 0){
+                    length += read;
+                }
+                if (length > 0) filled.put(ByteBuffer.wrap(block, 0, length));
+                if (read < 0) break;
+            }
+        } catch (IOException | RuntimeException readFailure){
+            failure = readFailure instanceof IOException ? (IOException)readFailure : new IOException(readFailure);
+        } catch (InterruptedException stopped){
+            //closed before the end
+        } finally {
+            try{
+                in.close();
+            } catch (IOException closeFailure){
+                if (failure == null) failure = closeFailure;
+            }
+            filled.offer(END);
+        }
+    }
+
+    @Override
+    public int read(ByteBuffer target) throws IOException{
+
+        if (!open) throw new ClosedChannelException();
+        if (eof) return -1;
+        try{
+            while (current == null || !current.hasRemaining()){
+                if (current != null) free.put(current.array());
+                current = filled.take();
+                if (current == END){
+                    eof = true;
+                    if (failure != null) throw failure;
+                    return -1;
+                }
+            }
+        } catch (InterruptedException stopped){
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted reading");
+        }
+
+        int length = Math.min(target.remaining(), current.remaining());
+        target.put(current.array(), current.position(), length);
+        current.position(current.position() + length);
+        return length;
+    }
+
+    @Override
+    public boolean isOpen(){
+        return open;
+    }
+    //stops the background thread, which closes in
+    @Override
+    public void close() throws IOException{
+        if (!open) return;
+        open = false;
+        reader.interrupt();
+        try{
+            reader.join();
+        } catch (InterruptedException stopped){
+            Thread.currentThread().interrupt();
+        }
+    }
+}
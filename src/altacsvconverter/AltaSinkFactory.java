@@ -0,0 +1,7 @@
+package altacsvconverter;
+
+//creates a new sink for every converted capture
+public interface AltaSinkFactory {
+
+    AltaOutputSink createSink();
+}
@@ -0,0 +1,40 @@
+package altacsvconverter;
+
+import java.io.IOException;
+
+//writes the bus statistics of a capture (.stats.json), see AltaBusStatistics
+public class AltaStatisticsSink implements AltaOutputSink {
+
+    private AltaOutputBuffer output;
+    private AltaBusStatistics statistics;
+
+    //counts can't be merged into a written report, so rows appended to a capture (-watch)
+    //get a report of their own named after the first of them, counting only those rows.
+    //a report for the whole capture means converting it again without -watch
+    @Override
+    public void open(AltaOutputFiles files) throws IOException{
+        output = new AltaOutputBuffer(files.create(".stats.json"), 16384);
+        statistics = new AltaBusStatistics();
+    }
+
+    @Override
+    public void writeBatch(AltaMessage[] batch, int count) throws IOException{
+        for (int row=0;row < count;row++) statistics.add(batch[row]);
+    }
+    //the report is written once every message has been counted
+    @Override
+    public void close() throws IOException{
+        if (output == null) return;
+        try{
+            statistics.writeJSON(output);
+            output.writeAscii(System.lineSeparator());
+        } finally {
+            output.close();
+            output = null;
+        }
+    }
+    //counts of the messages written so far
+    public AltaBusStatistics getStatistics(){
+        return statistics;
+    }
+}
@@ -0,0 +1,328 @@
+package altacsvconverter;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+//reads a store written by AltaStoreWriter, usage:
+//  AltaStoreReader <store.a1553s or folder> [-where terms] [-columns names] [-csv] [-numericWords]
+//prints the matching messages of every store as json lines (or csv rows)
+//
+//the block index is held in memory, a query only reads the blocks whose time span
+//overlaps its window and, when it names RTs or sub addresses, only the records listed
+//for them in the postings of those blocks
+public class AltaStoreReader implements Closeable {
+
+    //records closer than this are read together instead of one by one
+    private static final int MAX_GAP_RECORDS = 16;
+
+    //receives the messages of a query, the message is reused after visit returns
+    public interface Visitor {
+        void visit(long record, AltaMessage message) throws IOException;
+    }
+
+    private final Path path;
+    private final FileChannel records;
+    private final FileChannel postings;
+    private final long recordCount;     //records covered by the index
+    private final long[] firstRecords;  //first record of each block
+    private final int[] counts;         //records in each block
+    private final long[] postingsOffsets;
+    private final int[] postingsLengths;
+    private final long[] minNanos;      //earliest message of each block
+    private final long[] maxNanos;      //latest message of each block
+    private final int[] rtMasks;        //bit per RT address found in each block
+    private final int[] subAddressMasks;
+
+    public AltaStoreReader(Path path) throws IOException{
+
+        this.path = path;
+        records = FileChannel.open(path, StandardOpenOption.READ);
+        FileChannel opened = null;
+        try{
+            ByteBuffer header = read(records, 0, AltaStoreWriter.STORE_HEADER_BYTES);
+            checkHeader(header, AltaStoreWriter.STORE_MAGIC, path);
+            if (header.getInt() != AltaStoreWriter.RECORD_BYTES) throw new IOException(
+                    path + " has records of an unsupported size");
+            long stored = (records.size() - AltaStoreWriter.STORE_HEADER_BYTES) / AltaStoreWriter.RECORD_BYTES;
+
+            Path indexPath = sibling(path, ".a1553i");
+            ByteBuffer index;
+            try (FileChannel indexChannel = FileChannel.open(indexPath, StandardOpenOption.READ)){
+                index = read(indexChannel, 0, (int)indexChannel.size());
+            }
+            checkHeader(index, AltaStoreWriter.INDEX_MAGIC, indexPath);
+
+            int blocks = index.remaining() / AltaStoreWriter.INDEX_ENTRY_BYTES;
+            firstRecords = new long[blocks];
+            counts = new int[blocks];
+            postingsOffsets = new long[blocks];
+            postingsLengths = new int[blocks];
+            minNanos = new long[blocks];
+            maxNanos = new long[blocks];
+            rtMasks = new int[blocks];
+            subAddressMasks = new int[blocks];
+
+            long record = 0;
+            long postingsOffset = AltaStoreWriter.HEADER_BYTES;
+            for (int block=0;block < blocks;block++){
+                firstRecords[block] = record;
+                postingsOffsets[block] = postingsOffset;
+                counts[block] = index.getInt();
+                postingsLengths[block] = index.getInt();
+                minNanos[block] = index.getLong();
+                maxNanos[block] = index.getLong();
+                rtMasks[block] = index.getInt();
+                subAddressMasks[block] = index.getInt();
+                record += counts[block];
+                postingsOffset += postingsLengths[block];
+            }
+            //records are flushed before their index entries, so a store being appended to
+            //(-watch) or left by a crash can hold more records than are indexed, those
+            //aren't read until their entries are written
+            if (record > stored) throw new IOException(indexPath + " indexes " + record
+                    + " records, " + path + " holds " + stored);
+            recordCount = record;
+
+            Path postingsPath = sibling(path, ".a1553k");
+            opened = FileChannel.open(postingsPath, StandardOpenOption.READ);
+            checkHeader(read(opened, 0, AltaStoreWriter.HEADER_BYTES), AltaStoreWriter.POSTINGS_MAGIC, postingsPath);
+            if (opened.size() < postingsOffset) throw new IOException(postingsPath + " is truncated");
+            postings = opened;
+        } catch (IOException | RuntimeException failure){
+            records.close();
+            if (opened != null) opened.close();
+            throw failure;
+        }
+    }
+    //the index and postings of store.a1553s are store.a1553i and store.a1553k
+    private static Path sibling(Path store, String extension){
+        String name = store.toString();
+        int dot = name.lastIndexOf('.');
+        return Paths.get((dot > name.lastIndexOf(File.separatorChar) ? name.substring(0, dot) : name) + extension);
+    }
+
+    private static void checkHeader(ByteBuffer header, byte[] magic, Path path) throws IOException{
+        byte[] found = new byte[magic.length];
+        header.get(found);
+        if (!Arrays.equals(found, magic)) throw new IOException(path + " is not an alta store file");
+        int version = header.getInt();
+        if (version < 1 || version > AltaStoreWriter.VERSION) throw new IOException(
+                path + " has unsupported version " + version);
+    }
+
+    public long getMessageCount(){
+        return recordCount;
+    }
+    //earliest message in epoch nanoseconds, Long.MAX_VALUE if the store is empty
+    public long getEarliestNanos(){
+        long earliest = Long.MAX_VALUE;
+        for (long nanos : minNanos) earliest = Math.min(earliest, nanos);
+        return earliest;
+    }
+    //latest message in epoch nanoseconds, Long.MIN_VALUE if the store is empty
+    public long getLatestNanos(){
+        long latest = Long.MIN_VALUE;
+        for (long nanos : maxNanos) latest = Math.max(latest, nanos);
+        return latest;
+    }
+    //reads one record into message
+    public void read(long record, AltaMessage message) throws IOException{
+        if (record < 0 || record >= recordCount) throw new IndexOutOfBoundsException(
+                "Record " + record + " of " + recordCount);
+        decode(readRecords(record, 1), 0, message);
+    }
+    //visits the messages filter accepts (every message if filter is null) in store order,
+    //returns the number visited
+    public long query(AltaMessageFilter filter, Visitor visitor) throws IOException{
+
+        long from = filter == null ? Long.MIN_VALUE : filter.getFrom();
+        long to = filter == null ? Long.MAX_VALUE : filter.getTo();
+        boolean byAddress = filter != null && filter.filtersAddresses();
+        AltaMessage message = new AltaMessage();
+        long visited = 0;
+
+        for (int block=0;block < counts.length;block++){
+            if (maxNanos[block] < from || minNanos[block] >= to) continue;
+
+            int[] listed;
+            if (byAddress){
+                if ((rtMasks[block] & filter.getRTMask()) == 0
+                        || (subAddressMasks[block] & filter.getSubAddressMask()) == 0) continue;
+                listed = lookup(block, filter.getRTMask(), filter.getSubAddressMask());
+            }
+            else {
+                listed = new int[counts[block]];
+                for (int record=0;record < listed.length;record++) listed[record] = record;
+            }
+
+            //neighbouring records are read in one go
+            int run = 0;
+            while (run < listed.length){
+                int end = run + 1;
+                while (end < listed.length && listed[end] - listed[end-1] <= MAX_GAP_RECORDS) end++;
+
+                long first = firstRecords[block] + listed[run];
+                ByteBuffer buffer = readRecords(first, listed[end-1] - listed[run] + 1);
+                for (int index=run;index < end;index++){
+                    long record = firstRecords[block] + listed[index];
+                    decode(buffer, (int)(record - first) * AltaStoreWriter.RECORD_BYTES, message);
+                    if (filter != null && !filter.accepts(message)) continue;
+                    visitor.visit(record, message);
+                    visited++;
+                }
+                run = end;
+            }
+        }
+        return visited;
+    }
+    //every message filter accepts, each in its own AltaMessage
+    public List<AltaMessage> find(AltaMessageFilter filter) throws IOException{
+        final List<AltaMessage> found = new ArrayList<>();
+        query(filter, new Visitor(){
+            @Override public void visit(long record, AltaMessage message) throws IOException{
+                AltaMessage copy = new AltaMessage();
+                copy.setTime(message.epochDay, message.nanoOfDay);
+                copy.messageGap = message.messageGap;
+                System.arraycopy(message.command, 0, copy.command, 0, copy.command.length);
+                System.arraycopy(message.status, 0, copy.status, 0, copy.status.length);
+                copy.cdp = message.cdp;
+                System.arraycopy(message.dataWords, 0, copy.dataWords, 0, copy.dataWords.length);
+                found.add(copy);
+            }
+        });
+        return found;
+    }
+    //records of block listed for a key inside both masks, in ascending order
+    private int[] lookup(int block, int rtMask, int subAddressMask) throws IOException{
+
+        ByteBuffer listing = read(postings, postingsOffsets[block], postingsLengths[block]);
+        int keys = listing.getShort() & 0xFFFF;
+        int entries = 2 + 4 * keys;
+        boolean[] selected = new boolean[counts[block]];
+        int found = 0;
+        for (int key=0;key < keys;key++){
+            int value = listing.getShort(2 + 4 * key) & 0xFFFF;
+            int keyCount = listing.getShort(4 + 4 * key) & 0xFFFF;
+            if ((rtMask & 1 << (value >>> 5)) != 0 && (subAddressMask & 1 << (value & AltaMessage.FIELD_MASK)) != 0){
+                for (int entry=0;entry < keyCount;entry++){
+                    int record = listing.getChar(entries + 2 * entry);
+                    if (!selected[record]) found++;
+                    selected[record] = true;
+                }
+            }
+            entries += 2 * keyCount;
+        }
+
+        int[] listed = new int[found];
+        for (int record=0,index=0;record < selected.length;record++){
+            if (selected[record]) listed[index++] = record;
+        }
+        return listed;
+    }
+
+    private ByteBuffer readRecords(long first, int count) throws IOException{
+        return read(records, AltaStoreWriter.STORE_HEADER_BYTES + first * AltaStoreWriter.RECORD_BYTES,
+                count * AltaStoreWriter.RECORD_BYTES);
+    }
+    //see AltaStoreWriter for the record layout
+    private static void decode(ByteBuffer buffer, int offset, AltaMessage message){
+        long nanos = buffer.getLong(offset);
+        message.setTime(Math.floorDiv(nanos, AltaTimestamp.NANOS_PER_DAY), Math.floorMod(nanos, AltaTimestamp.NANOS_PER_DAY));
+        message.messageGap = buffer.getLong(offset + 8);
+        message.command[0] = buffer.getChar(offset + 16);
+        message.command[1] = buffer.getChar(offset + 18);
+        message.status[0] = buffer.getChar(offset + 20);
+        message.status[1] = buffer.getChar(offset + 22);
+        message.cdp = buffer.getInt(offset + 24);
+        for (int word=0;word < AltaMessage.MAX_DATA_WORDS;word++){
+            message.dataWords[word] = buffer.getChar(offset + 28 + 2 * word);
+        }
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException{
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()){
+            if (channel.read(buffer, position + buffer.position()) < 0) throw new IOException(
+                    "Unexpected end of file");
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    @Override
+    public void close() throws IOException{
+        try{
+            records.close();
+        } finally {
+            postings.close();
+        }
+    }
+
+    @Override
+    public String toString(){
+        return path.toString();
+    }
+
+    public static void main(String[] args) throws IOException{
+
+        String name = null;
+        boolean csv = false;
+        boolean numericWords = false;
+        AltaMessageFilter filter = new AltaMessageFilter();
+        for (int arg=0;arg < args.length;arg++){
+            try{
+                if (args[arg].equals("-where") && arg+1 < args.length) filter.where(args[++arg]);
+                else if (args[arg].equals("-columns") && arg+1 < args.length) filter.columns(args[++arg]);
+                else if (args[arg].equals("-csv")) csv = true;
+                else if (args[arg].equals("-numericWords")) numericWords = true;
+                else name = args[arg];
+            } catch (IllegalArgumentException badFilter){
+                System.err.println(badFilter.getMessage());
+                return;
+            }
+        }
+        if (name == null){
+            System.err.println("Usage: AltaStoreReader <store.a1553s or folder> [-where terms] "
+                    + "[-columns names] [-csv] [-numericWords]");
+            return;
+        }
+
+        File[] stores = {new File(name)};
+        if (stores[0].isDirectory()){
+            stores = stores[0].listFiles(new FilenameFilter(){
+                @Override public boolean accept(File dir, String file)
+                { return file.endsWith(".a1553s"); } });
+            Arrays.sort(stores);
+        }
+
+        long start = System.nanoTime();
+        long messages = 0;
+        final AltaMessageFormatter formatter = new AltaMessageFormatter(AltaMessage.HEADERS,
+                filter.getColumns(), csv, numericWords);
+        final AltaOutputBuffer output = new AltaOutputBuffer(System.out, AltaOutputBuffer.DEFAULT_CAPACITY);
+        formatter.writeHeader(output);
+        for (File store : stores){
+            try (AltaStoreReader reader = new AltaStoreReader(store.toPath())){
+                messages += reader.query(filter, new Visitor(){
+                    @Override public void visit(long record, AltaMessage message) throws IOException{
+                        formatter.write(message, output);
+                    }
+                });
+            }
+        }
+        output.flush();
+        System.err.println(String.format("%d messages from %d stores in %.3f s", messages, stores.length,
+                (System.nanoTime() - start) / 1e9));
+    }
+}
@@ -0,0 +1,50 @@
+package altacsvconverter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+//writes indexed fixed width stores (.a1553s, .a1553i, .a1553k), see AltaStoreWriter
+public class AltaStoreSink implements AltaOutputSink {
+
+    private static final String[] EXTENSIONS = {".a1553s", ".a1553i", ".a1553k"};
+
+    private AltaStoreWriter writer;
+
+    //the store and its index only grow, rows appended to a capture are added to them
+    @Override
+    public void open(AltaOutputFiles files) throws IOException{
+
+        OutputStream[] outputs = new OutputStream[EXTENSIONS.length];
+        boolean appended = true;
+        try{
+            for (int output=0;output < outputs.length;output++){
+                outputs[output] = files.append(EXTENSIONS[output]);
+                if (outputs[output] == null) appended = false;
+            }
+            //a store missing a file is started over as a whole
+            if (!appended){
+                for (int output=0;output < outputs.length;output++){
+                    if (outputs[output] != null) outputs[output].close();
+                    outputs[output] = files.create(EXTENSIONS[output]);
+                }
+            }
+        } catch (IOException | RuntimeException failure){
+            for (OutputStream output : outputs){
+                if (output != null) output.close();
+            }
+            throw failure;
+        }
+        writer = new AltaStoreWriter(outputs[0], outputs[1], outputs[2], !appended);
+    }
+
+    @Override
+    public void writeBatch(AltaMessage[] batch, int count) throws IOException{
+        for (int row=0;row < count;row++) writer.write(batch[row]);
+    }
+
+    @Override
+    public void close() throws IOException{
+        if (writer != null) writer.close();
+        writer = null;
+    }
+}
@@ -0,0 +1,160 @@
+package altacsvconverter;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+//writes decoded messages as fixed width records (.a1553s) with a sidecar block index
+//(.a1553i) and per block lists of the records for each RT/sub address (.a1553k)
+//
+//all three files are little endian and only ever appended to, so rows added to a
+//capture are written after the ones already there:
+//  .a1553s  "A1553STO" | version | record bytes | records...
+//           record: epoch nanos (long), gap in 100ns (long), CMD1, CMD2, STS1, STS2 (short),
+//           CDP (int), MAX_DATA_WORDS data words (short)
+//  .a1553i  "A1553IDX" | version | entry per block of up to BLOCK_RECORDS records:
+//           record count, postings length (int), earliest and latest epoch nanos (long),
+//           RT mask, sub address mask (int, bit per address found in the block)
+//  .a1553k  "A1553KEY" | version | postings per block: key count (short), per key the
+//           key (rt << 5 | sub address) and record count (short), then per key the
+//           records in the block (unsigned short)
+//CMD2 is only indexed for RT-RT transfers. offsets aren't stored, a reader adds up the
+//record counts and postings lengths (see AltaStoreReader)
+public class AltaStoreWriter implements Closeable {
+
+    public static final int VERSION = 1;
+    public static final int RECORD_BYTES = 8 + 8 + 4 * 2 + 4 + AltaMessage.MAX_DATA_WORDS * 2;
+    public static final int BLOCK_RECORDS = 4096;
+    public static final int INDEX_ENTRY_BYTES = 4 + 4 + 8 + 8 + 4 + 4;
+    static final int HEADER_BYTES = 8 + 4;                     //magic and version
+    static final int STORE_HEADER_BYTES = HEADER_BYTES + 4;     //and record bytes
+
+    static final byte[] STORE_MAGIC = "A1553STO".getBytes(StandardCharsets.US_ASCII);
+    static final byte[] INDEX_MAGIC = "A1553IDX".getBytes(StandardCharsets.US_ASCII);
+    static final byte[] POSTINGS_MAGIC = "A1553KEY".getBytes(StandardCharsets.US_ASCII);
+
+    private final OutputStream records;
+    private final OutputStream index;
+    private final OutputStream postings;
+
+    private final ByteBuffer block = ByteBuffer.allocate(BLOCK_RECORDS * RECORD_BYTES)
+            .order(ByteOrder.LITTLE_ENDIAN);
+    private final short[] firstKeys = new short[BLOCK_RECORDS];    //CMD1 key of each record
+    private final short[] secondKeys = new short[BLOCK_RECORDS];   //CMD2 key, -1 unless RT-RT
+    private final int[] keyCounts = new int[AltaMessage.KEYS];
+    private int count = 0;              //records in the current block
+    private long minNanos;
+    private long maxNanos;
+
+    //takes ownership of the streams, the headers are only written to new files
+    public AltaStoreWriter(OutputStream records, OutputStream index, OutputStream postings,
+            boolean writeHeaders) throws IOException{
+
+        this.records = new BufferedOutputStream(records, AltaOutputBuffer.DEFAULT_CAPACITY);
+        this.index = new BufferedOutputStream(index);
+        this.postings = new BufferedOutputStream(postings);
+        if (!writeHeaders) return;
+
+        ByteBuffer header = ByteBuffer.allocate(STORE_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(STORE_MAGIC).putInt(VERSION).putInt(RECORD_BYTES);
+        this.records.write(header.array(), 0, header.position());
+        header.clear();
+        header.put(INDEX_MAGIC).putInt(VERSION);
+        this.index.write(header.array(), 0, header.position());
+        header.clear();
+        header.put(POSTINGS_MAGIC).putInt(VERSION);
+        this.postings.write(header.array(), 0, header.position());
+    }
+
+    public void write(AltaMessage message) throws IOException{
+
+        long nanos = message.getEpochNanos();
+        if (count == 0 || nanos < minNanos) minNanos = nanos;
+        if (count == 0 || nanos > maxNanos) maxNanos = nanos;
+
+        //words are 16 bit on the bus, wider values in a capture are cut to their low bits
+        block.putLong(nanos);
+        block.putLong(message.messageGap);
+        block.putShort((short)message.command[0]);
+        block.putShort((short)message.command[1]);
+        block.putShort((short)message.status[0]);
+        block.putShort((short)message.status[1]);
+        block.putInt(message.cdp);
+        for (int word=0;word < AltaMessage.MAX_DATA_WORDS;word++) block.putShort((short)message.dataWords[word]);
+
+        firstKeys[count] = (short)AltaMessage.key(message.command[0]);
+        keyCounts[firstKeys[count]]++;
+        secondKeys[count] = -1;
+        if (message.isRTtoRT()){
+            int second = AltaMessage.key(message.command[1]);
+            if (second != firstKeys[count]){
+                secondKeys[count] = (short)second;
+                keyCounts[second]++;
+            }
+        }
+
+        if (++count == BLOCK_RECORDS) flushBlock();
+    }
+
+    private void flushBlock() throws IOException{
+
+        if (count == 0) return;
+        records.write(block.array(), 0, block.position());
+
+        //records of each key in block order, keys in ascending order
+        int keys = 0;
+        int entries = 0;
+        int rtMask = 0;
+        int subAddressMask = 0;
+        int[] starts = new int[AltaMessage.KEYS];
+        for (int key=0;key < AltaMessage.KEYS;key++){
+            if (keyCounts[key] == 0) continue;
+            starts[key] = entries;
+            entries += keyCounts[key];
+            keys++;
+            rtMask |= 1 << (key >>> 5);
+            subAddressMask |= 1 << (key & AltaMessage.FIELD_MASK);
+        }
+        char[] listed = new char[entries];
+        for (int record=0;record < count;record++){
+            listed[starts[firstKeys[record]]++] = (char)record;
+            if (secondKeys[record] >= 0) listed[starts[secondKeys[record]]++] = (char)record;
+        }
+
+        ByteBuffer encoded = ByteBuffer.allocate(2 + 4 * keys + 2 * entries).order(ByteOrder.LITTLE_ENDIAN);
+        encoded.putShort((short)keys);
+        for (int key=0;key < AltaMessage.KEYS;key++){
+            if (keyCounts[key] > 0) encoded.putShort((short)key).putShort((short)keyCounts[key]);
+        }
+        for (char record : listed) encoded.putChar(record);
+        postings.write(encoded.array());
+
+        ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        entry.putInt(count).putInt(encoded.capacity()).putLong(minNanos).putLong(maxNanos)
+                .putInt(rtMask).putInt(subAddressMask);
+        index.write(entry.array());
+
+        block.clear();
+        Arrays.fill(keyCounts, 0);
+        count = 0;
+    }
+    //the index is written last so a reader never finds entries for missing records
+    @Override
+    public void close() throws IOException{
+        try{
+            flushBlock();
+        } finally {
+            try{
+                records.close();
+                postings.close();
+            } finally {
+                index.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package altacsvconverter;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+//converts an alta csv in a single pass, holding at most one chunk of rows in memory
+//(not thread safe, use one converter per thread)
+public class AltaStreamConverter {
+
+    public static final int DEFAULT_CHUNK_SIZE = 4096;
+
+    private static final String GZIP_EXTENSION = ".csv.gz";
+    private static final int GZIP_BUFFER = 1 << 16;
+
+    private final List<AltaSinkFactory> sinks;  //outputs written for every capture
+    private final AltaMessage[] chunk;          //messages reused for every chunk
+    private boolean skipMalformed = false;      //count and skip rows that can't be parsed
+    private AltaMessageFilter filter;           //rows to keep, null for all of them
+
+    public AltaStreamConverter(List<? extends AltaSinkFactory> sinks, int chunkSize){
+        this.sinks = new ArrayList<AltaSinkFactory>(sinks);
+
+        chunk = new AltaMessage[Math.max(1, chunkSize)];
+        for (int row=0;row < chunk.length;row++) chunk[row] = new AltaMessage();
+    }
+    public void setSkipMalformed(boolean skipMalformed){
+        this.skipMalformed = skipMalformed;
+    }
+
+    public void setFilter(AltaMessageFilter filter){
+        this.filter = filter;
+    }
+    //streams altaFileName through the decoder into folderName/alta1553 and moves the
+    //output into place
+    public AltaConversionResult convert(String altaFileName, String folderName) throws IOException{
+        AltaConversionResult result = convertToPart(altaFileName, folderName);
+        result.commit();
+        return result;
+    }
+    //streams altaFileName through the decoder into part files, the caller decides when
+    //to commit them so that outputs sharing a name are replaced in a known order
+    public AltaConversionResult convertToPart(String altaFileName, String folderName) throws IOException{
+        return convertToPart(new AltaConversionResult(altaFileName, folderName), 0, Long.MAX_VALUE);
+    }
+    //streams the bytes [from, to) of the result's capture into part files, from is 0 or
+    //the start of a line after the header (used to pick up rows appended to a capture)
+    public AltaConversionResult convertToPart(AltaConversionResult result, long from, long to)
+            throws IOException{
+
+        long start = System.nanoTime();
+        String altaFileName = result.getAltaFileName();
+        long messages;
+
+        try (ReadableByteChannel channel = open(altaFileName, from)){
+            AltaCSVTokenizer tokenizer = tokenizer(channel,
+                    (int)Math.min(AltaCSVTokenizer.DEFAULT_BUFFER_SIZE, Math.max(1, to - from)), to - from);
+            tokenizer.setStartOffset(from);
+            messages = convert(tokenizer, from == 0, AltaMultiSink.create(sinks), result, result,
+                    result.getMetrics());
+        } catch (IOException | RuntimeException failure){
+            result.discard();
+            throw failure;
+        }
+
+        if (messages == 0) System.out.println("No messages found in " + altaFileName + ".");
+
+        result.setMessages(messages);
+        result.setElapsedNanos(System.nanoTime() - start);
+        return result;
+    }
+    //passes the capture on channel, header line first, to sink (used by AltaConverter).
+    //the sink is opened from files before the first row is read, so an empty capture
+    //still gets (empty) outputs. channel is left open
+    void convert(ReadableByteChannel channel, AltaOutputSink sink, AltaOutputFiles files,
+            AltaConversionMetrics metrics) throws IOException{
+        convert(tokenizer(channel, AltaCSVTokenizer.DEFAULT_BUFFER_SIZE, Long.MAX_VALUE), true,
+                sink, files, null, metrics);
+    }
+
+    private AltaCSVTokenizer tokenizer(ReadableByteChannel channel, int bufferSize, long length){
+        AltaCSVTokenizer tokenizer = new AltaCSVTokenizer(channel, bufferSize, length);
+        tokenizer.setSkipMalformed(skipMalformed);
+        tokenizer.setFilter(filter);
+        return tokenizer;
+    }
+    //decodes the rows of tokenizer chunk by chunk into sink and counts them in metrics,
+    //returns the number of messages. the outputs of a result are named after the first
+    //message, so its sink is only opened then (an empty capture gets none), without a
+    //result the sink is opened from files straight away. a failing sink is closed
+    private long convert(AltaCSVTokenizer tokenizer, boolean header, AltaOutputSink sink,
+            AltaOutputFiles files, AltaConversionResult result, AltaConversionMetrics metrics)
+            throws IOException{
+
+        long messages = 0;
+        long parseNanos = 0;            //reading and decoding, reads are taken out at the end
+        boolean opened = false;
+
+        try{
+            //Pop the first line of the stream, the read behind it is timed with the rest
+            long stageStart = System.nanoTime();
+            if (header) tokenizer.skipLine();
+            if (result == null){
+                long opening = System.nanoTime();
+                parseNanos += opening - stageStart;
+                opened = true;
+                sink.open(files);
+                stageStart = System.nanoTime();
+                metrics.addWrite(stageStart - opening);
+            }
+
+            int rows;
+            while ((rows = readChunk(tokenizer)) > 0){
+                long written = System.nanoTime();
+                parseNanos += written - stageStart;
+                if (!opened){
+                    result.setStartTime(chunk[0]);
+                    opened = true;
+                    sink.open(files);
+                }
+                sink.writeBatch(chunk, rows);
+                metrics.count(chunk, rows);
+                messages += rows;
+                stageStart = System.nanoTime();
+                metrics.addWrite(stageStart - written);
+            }
+            parseNanos += System.nanoTime() - stageStart;
+
+            long closing = System.nanoTime();
+            if (opened) sink.close();
+            metrics.addWrite(System.nanoTime() - closing);
+        } catch (IOException | RuntimeException failure){
+            if (opened) closeQuietly(sink);
+            throw failure;
+        }
+
+        metrics.addRead(tokenizer.getReadNanos(), tokenizer.getBytesRead());
+        metrics.addDecode(parseNanos - tokenizer.getReadNanos());
+        metrics.addMalformedRows(tokenizer.getMalformedRows());
+        metrics.addFilteredRows(tokenizer.getFilteredRows());
+        return messages;
+    }
+    //gzipped captures are read whole, they can't be split or resumed part way
+    public static boolean isCompressed(String altaFileName){
+        return altaFileName.endsWith(GZIP_EXTENSION);
+    }
+    //names of the captures open reads, plain (.csv) or gzipped (.csv.gz)
+    public static boolean isCapture(String altaFileName){
+        return altaFileName.endsWith(".csv") || isCompressed(altaFileName);
+    }
+    //the capture from offset from, gzipped captures are inflated on a thread of their own
+    static ReadableByteChannel open(String altaFileName, long from) throws IOException{
+
+        if (isCompressed(altaFileName)){
+            if (from != 0) throw new IOException("Can't start part way into " + altaFileName);
+            FileInputStream file = new FileInputStream(altaFileName);
+            try{
+                return new AltaReadAheadChannel(new GZIPInputStream(file, GZIP_BUFFER), "alta-gunzip");
+            } catch (IOException | RuntimeException failure){
+                file.close();
+                throw failure;
+            }
+        }
+        FileChannel channel = FileChannel.open(Paths.get(altaFileName), StandardOpenOption.READ);
+        try{
+            channel.position(from);
+        } catch (IOException failure){
+            channel.close();
+            throw failure;
+        }
+        return channel;
+    }
+    //reads up to chunk.length messages, returns the number of messages read
+    private int readChunk(AltaCSVTokenizer tokenizer) throws IOException{
+
+        int rows = 0;
+        while (rows < chunk.length && tokenizer.next(chunk[rows])) rows++;
+        return rows;
+    }
+    //used on failure, the original exception is the one worth reporting
+    static void closeQuietly(AltaOutputSink sink){
+        if (sink == null) return;
+        try{
+            sink.close();
+        } catch (IOException | RuntimeException message){
+            message.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package altacsvconverter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+//writes json lines (.json) or csv rows (.csv), optionally gzipped (.json.gz, .csv.gz)
+public class AltaTextSink implements AltaEncodedSink {
+
+    private static final int GZIP_BUFFER = 1 << 16;
+
+    //rough size of one formatted message, used to size encode buffers
+    private static final int BYTES_PER_MESSAGE = 640;
+
+    private final AltaMessageFormatter formatter;
+    private final boolean csv;
+    private final boolean gzip;         //compress on a thread of its own
+    private AltaOutputBuffer output;
+
+    public AltaTextSink(boolean csv){
+        this(csv, false);
+    }
+    //numericWords writes json data words as an array of numbers instead of hex
+    public AltaTextSink(boolean csv, boolean numericWords){
+        this(csv, numericWords, AltaMessage.allColumns());
+    }
+    //writes only columns, indexes into AltaMessage.HEADERS
+    public AltaTextSink(boolean csv, boolean numericWords, int[] columns){
+        this(csv, numericWords, columns, false);
+    }
+
+    public AltaTextSink(boolean csv, boolean numericWords, int[] columns, boolean gzip){
+        this.csv = csv;
+        this.gzip = gzip;
+        this.formatter = new AltaMessageFormatter(AltaMessage.HEADERS, columns, csv, numericWords);
+    }
+
+    @Override
+    public void open(AltaOutputFiles files) throws IOException{
+        String extension = (csv ? ".csv" : ".json") + (gzip ? ".gz" : "");
+
+        //rows appended to a capture go after the ones already converted, gzipped
+        //outputs get another gzip member which readers take as a continuation
+        OutputStream appended = files.append(extension);
+        if (appended != null){
+            output = new AltaOutputBuffer(compress(appended), AltaOutputBuffer.DEFAULT_CAPACITY);
+            return;
+        }
+        output = new AltaOutputBuffer(compress(files.create(extension)), AltaOutputBuffer.DEFAULT_CAPACITY);
+        formatter.writeHeader(output);
+    }
+
+    private OutputStream compress(OutputStream out) throws IOException{
+        if (!gzip) return out;
+        GZIPOutputStream compressed;
+        try{
+            compressed = new GZIPOutputStream(out, GZIP_BUFFER){
+                { def.setLevel(Deflater.BEST_SPEED); }
+            };
+        } catch (IOException failure){
+            out.close();
+            throw failure;
+        }
+        return new AltaWriteBehindStream(compressed, "alta-gzip");
+    }
+
+    @Override
+    public void writeBatch(AltaMessage[] batch, int count) throws IOException{
+        for (int row=0;row < count;row++) formatter.write(batch[row], output);
+    }
+
+    @Override
+    public AltaOutputBuffer encode(AltaMessage[] batch, int count) throws IOException{
+        AltaOutputBuffer encoded = new AltaOutputBuffer(Math.max(1, count) * BYTES_PER_MESSAGE);
+        for (int row=0;row < count;row++) formatter.write(batch[row], encoded);
+        return encoded;
+    }
+
+    @Override
+    public void writeEncoded(AltaOutputBuffer encoded) throws IOException{
+        output.write(encoded);
+    }
+
+    @Override
+    public void close() throws IOException{
+        if (output != null) output.close();
+        output = null;
+    }
+}
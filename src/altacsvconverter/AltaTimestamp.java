@@ -0,0 +1,160 @@
+package altacsvconverter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+
+//parses alta timestamps, [YYYY](Calendar Day)HH:MM:SS.mmm.uuu.nnn, field by field and
+//formats them the way LocalDateTime.toString does
+//
+//consecutive messages nearly always share their day and hour, so the last day looked up
+//and the last "YYYY-MM-DDTHH:" prefix built are cached and only the rest is formatted.
+//the caches are immutable objects swapped through volatile fields, so one instance can
+//be shared between threads
+public class AltaTimestamp {
+
+    public static final long NANOS_PER_SECOND = 1000000000L;
+    public static final long NANOS_PER_MINUTE = 60 * NANOS_PER_SECOND;
+    public static final long NANOS_PER_HOUR = 60 * NANOS_PER_MINUTE;
+    public static final long NANOS_PER_DAY = 24 * NANOS_PER_HOUR;
+
+    //day of year resolved to an epoch day
+    private static final class Day {
+        final int year;
+        final int dayOfYear;
+        final long epochDay;
+
+        Day(int year, int dayOfYear, long epochDay){
+            this.year = year;
+            this.dayOfYear = dayOfYear;
+            this.epochDay = epochDay;
+        }
+    }
+    //formatted date and hour, "YYYY-MM-DDTHH:"
+    private static final class Prefix {
+        final long epochHour;
+        final byte[] bytes;
+
+        Prefix(long epochHour, byte[] bytes){
+            this.epochHour = epochHour;
+            this.bytes = bytes;
+        }
+    }
+
+    private volatile Day day = new Day(-1, -1, 0);
+    private volatile Prefix prefix = new Prefix(Long.MIN_VALUE, null);
+
+    //sets the time of message from the alta timestamp in bytes[start, end)
+    public void parse(byte[] bytes, int start, int end, AltaMessage message){
+
+        //[YYYY](D) to [YYYY](DDD)
+        int close = start + 7;
+        while (close < end && bytes[close] != ')') close++;
+        if (close >= end || close == start + 7 || close > start + 10 || bytes[start] != '['
+                || bytes[start+5] != ']' || bytes[start+6] != '(') throw malformed(bytes, start, end);
+        int year = digits(bytes, start + 1, 4);
+        int dayOfYear = digits(bytes, start + 7, close - start - 7);
+
+        //HH:MM:SS.mmm, then .uuu and .nnn if AltaView wrote them
+        int time = close + 1;
+        int length = end - time;
+        if ((length != 12 && length != 16 && length != 20) || bytes[time+2] != ':'
+                || bytes[time+5] != ':') throw malformed(bytes, start, end);
+        int hour = digits(bytes, time, 2);
+        int minute = digits(bytes, time + 3, 2);
+        int second = digits(bytes, time + 6, 2);
+
+        long nanos = 0;
+        for (int group=time+8;group < time+20;group+=4){
+            int value = 0;
+            if (group < end){
+                if (bytes[group] != '.') throw malformed(bytes, start, end);
+                value = digits(bytes, group + 1, 3);
+                if (value < 0) throw malformed(bytes, start, end);
+            }
+            nanos = nanos * 1000 + value;
+        }
+
+        if (year < 0 || dayOfYear < 0 || hour < 0 || hour > 23 || minute < 0 || minute > 59
+                || second < 0 || second > 59) throw malformed(bytes, start, end);
+
+        message.setTime(epochDay(year, dayOfYear, bytes, start, end),
+                hour * NANOS_PER_HOUR + minute * NANOS_PER_MINUTE + second * NANOS_PER_SECOND + nanos);
+    }
+
+    public void parse(String altaTime, AltaMessage message){
+        byte[] bytes = altaTime.trim().getBytes(StandardCharsets.ISO_8859_1);
+        parse(bytes, 0, bytes.length, message);
+    }
+
+    private long epochDay(int year, int dayOfYear, byte[] bytes, int start, int end){
+        Day cached = day;
+        if (cached.year == year && cached.dayOfYear == dayOfYear) return cached.epochDay;
+        try{
+            cached = new Day(year, dayOfYear, LocalDate.ofYearDay(year, dayOfYear).toEpochDay());
+        } catch (DateTimeException invalid){
+            throw malformed(bytes, start, end);
+        }
+        day = cached;
+        return cached.epochDay;
+    }
+    //value of count decimal digits at index, -1 if any of them isn't a digit
+    private static int digits(byte[] bytes, int index, int count){
+        int value = 0;
+        for (int end=index+count;index < end;index++){
+            int digit = bytes[index] - '0';
+            if (digit < 0 || digit > 9) return -1;
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static NumberFormatException malformed(byte[] bytes, int start, int end){
+        return new NumberFormatException("Malformed alta timestamp: "
+                + new String(bytes, start, end - start, StandardCharsets.ISO_8859_1));
+    }
+    //writes the ISO 8601 time of message, same text as LocalDateTime.toString
+    public void write(AltaMessage message, AltaOutputBuffer output) throws IOException{
+
+        long nanoOfDay = message.getNanoOfDay();
+        int hour = (int)(nanoOfDay / NANOS_PER_HOUR);
+        long epochHour = message.getEpochDay() * 24 + hour;
+
+        Prefix cached = prefix;
+        if (cached.epochHour != epochHour){
+            String text = LocalDate.ofEpochDay(message.getEpochDay()) + "T" + (hour < 10 ? "0" : "")
+                    + hour + ":";
+            cached = new Prefix(epochHour, text.getBytes(StandardCharsets.US_ASCII));
+            prefix = cached;
+        }
+        output.write(cached.bytes);
+
+        long nanoOfHour = nanoOfDay - hour * NANOS_PER_HOUR;
+        output.writeDigits((int)(nanoOfHour / NANOS_PER_MINUTE), 2);
+
+        //seconds are left out when they and the fraction are zero, the fraction is
+        //written in groups of three digits as far as it's needed
+        long nanoOfMinute = nanoOfHour % NANOS_PER_MINUTE;
+        if (nanoOfMinute == 0) return;
+        output.write(':');
+        output.writeDigits((int)(nanoOfMinute / NANOS_PER_SECOND), 2);
+
+        int nano = (int)(nanoOfMinute % NANOS_PER_SECOND);
+        if (nano == 0) return;
+        output.write('.');
+        if (nano % 1000000 == 0) output.writeDigits(nano / 1000000, 3);
+        else if (nano % 1000 == 0) output.writeDigits(nano / 1000, 6);
+        else output.writeDigits(nano, 9);
+    }
+
+    public String format(AltaMessage message){
+        AltaOutputBuffer output = new AltaOutputBuffer(32);
+        try{
+            write(message, output);
+        } catch (IOException unreachable){
+            throw new IllegalStateException(unreachable);
+        }
+        return output.toString();
+    }
+}
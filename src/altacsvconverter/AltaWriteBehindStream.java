@@ -0,0 +1,124 @@
+package altacsvconverter;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+//collects writes into blocks that a background thread passes on to out, so a slow
+//stream (gzip) runs alongside the decoding instead of in turn with it
+//(not thread safe, one thread writes and closes)
+public class AltaWriteBehindStream extends OutputStream {
+
+    private static final int BLOCK_BYTES = 1 << 18;
+    private static final int BLOCKS = 4;        //blocks in flight, bounds the memory held
+    private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+    private final OutputStream out;
+    private final BlockingQueue<ByteBuffer> filled = new ArrayBlockingQueue<>(BLOCKS + 1);
+    private final BlockingQueue<byte[]> free = new ArrayBlockingQueue<>(BLOCKS);
+    private final Thread writer;
+    private volatile IOException failure;       //first failure of the background thread
+    private byte[] block;
+    private int count = 0;
+    private boolean closed = false;
+
+    //takes ownership of out, it's closed from the background thread
+    public AltaWriteBehindStream(OutputStream out, String name){
+        this.out = out;
+        for (int index=0;index < BLOCKS;index++) free.add(new byte[BLOCK_BYTES]);
+        block = free.poll();
+
+        writer = new Thread(new Runnable(){
+            @Override public void run(){
+                drain();
+            }
+        }, name);
+        writer.setDaemon(true);
+        writer.start();
+    }
+    //background thread, writes blocks until END and keeps taking them after a failure
+    //so the writing thread never blocks
+    private void drain(){
+        try{
+            while (true){
+                ByteBuffer next = filled.take();
+                if (next == END) break;
+                if (failure == null){
+                    try{
+                        out.write(next.array(), 0, next.limit());
+                    } catch (IOException | RuntimeException writeFailure){
+                        failure = writeFailure instanceof IOException ? (IOException)writeFailure
+                                : new IOException(writeFailure);
+                    }
+                }
+                free.put(next.array());
+            }
+        } catch (InterruptedException stopped){
+            if (failure == null) failure = new InterruptedIOException("Writer stopped");
+        } finally {
+            try{
+                out.close();
+            } catch (IOException closeFailure){
+                if (failure == null) failure = closeFailure;
+            }
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException{
+        if (count == block.length) handOver();
+        block[count++] = (byte)b;
+    }
+
+    @Override
+    public void write(byte[] source, int offset, int length) throws IOException{
+        while (length > 0){
+            if (count == block.length) handOver();
+            int copied = Math.min(length, block.length - count);
+            System.arraycopy(source, offset, block, count, copied);
+            count += copied;
+            offset += copied;
+            length -= copied;
+        }
+    }
+    //hands the current block to the background thread without waiting for it
+    @Override
+    public void flush() throws IOException{
+        if (count > 0) handOver();
+    }
+
+    private void handOver() throws IOException{
+        if (closed) throw new IOException("Stream closed");
+        if (failure != null) throw failure;
+        try{
+            filled.put(ByteBuffer.wrap(block, 0, count));
+            block = free.take();
+            count = 0;
+        } catch (InterruptedException stopped){
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted writing");
+        }
+    }
+    //waits for everything written to reach out and closes it
+    @Override
+    public void close() throws IOException{
+        if (closed) return;
+        try{
+            flush();
+        } finally {
+            closed = true;
+            try{
+                filled.put(END);
+                writer.join();
+            } catch (InterruptedException stopped){
+                writer.interrupt();
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted closing");
+            }
+        }
+        if (failure != null) throw failure;
+    }
+}